@@ -0,0 +1,9 @@
+#!/bin/sh
+
+# Requires jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars in lib/
+# HEAP sets the heap of benchmark forks, for example HEAP=16g for 10^8 elements
+javac -d out/arrayset_benchmark -cp "lib/*" java/ru.ifmo.rain.shelepov/arrayset/*.java benchmarks/ru.ifmo.rain.shelepov/arrayset/*.java
+if [ -n "$HEAP" ]; then
+    set -- -jvmArgsAppend "-Xms$HEAP -Xmx$HEAP" "$@"
+fi
+java -cp "out/arrayset_benchmark:lib/*" org.openjdk.jmh.Main ru.ifmo.rain.shelepov.arrayset "$@"
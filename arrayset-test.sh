@@ -1,2 +1,2 @@
-javac -d out/arrayset_build java/ru.ifmo.rain.shelepov/arrayset/ReversedListView.java java/ru.ifmo.rain.shelepov/arrayset/ArraySet.java
+javac -d out/arrayset_build java/ru.ifmo.rain.shelepov/arrayset/EytzingerIndex.java java/ru.ifmo.rain.shelepov/arrayset/ArraySet.java java/ru.ifmo.rain.shelepov/arrayset/IntArraySet.java java/ru.ifmo.rain.shelepov/arrayset/LongArraySet.java java/ru.ifmo.rain.shelepov/arrayset/SortedArraySet.java java/ru.ifmo.rain.shelepov/arrayset/MappedArraySet.java java/ru.ifmo.rain.shelepov/arrayset/SearchableList.java
 java -cp out/arrayset_build -p artifacts:lib -m info.kgeorgiy.java.advanced.arrayset NavigableSet ru.ifmo.rain.shelepov.arrayset.ArraySet
\ No newline at end of file
@@ -0,0 +1,118 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArraySetBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    // 100000000 needs about 16G of heap: arrayset-benchmark.sh with HEAP=16g and -p size=100000000
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"ArraySet", "TreeSet", "ConcurrentSkipListSet"})
+    private String implementation;
+
+    @Param({"natural", "custom"})
+    private String order;
+
+    private List<Integer> elements;
+    private Comparator<Integer> comparator;
+    private NavigableSet<Integer> set;
+    private Integer[] probes;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(4875043285743285204L);
+        elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(random.nextInt());
+        }
+        comparator = "natural".equals(order) ? null : Comparator.comparingInt(Integer::intValue);
+        set = build();
+
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = i % 2 == 0 ? elements.get(random.nextInt(size)) : random.nextInt();
+        }
+    }
+
+    private NavigableSet<Integer> build() {
+        switch (implementation) {
+            case "ArraySet":
+                return new ArraySet<>((Collection<Integer>) elements, comparator);
+            case "TreeSet":
+                NavigableSet<Integer> tree = new TreeSet<>(comparator);
+                tree.addAll(elements);
+                return tree;
+            case "ConcurrentSkipListSet":
+                NavigableSet<Integer> skipList = new ConcurrentSkipListSet<>(comparator);
+                skipList.addAll(elements);
+                return skipList;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    private Integer nextProbe() {
+        return probes[probe++ & (PROBES - 1)];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public NavigableSet<Integer> construction() {
+        return build();
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(nextProbe());
+    }
+
+    @Benchmark
+    public Integer floor() {
+        return set.floor(nextProbe());
+    }
+
+    @Benchmark
+    public Integer ceiling() {
+        return set.ceiling(nextProbe());
+    }
+
+    @Benchmark
+    public NavigableSet<Integer> subSet() {
+        Integer a = nextProbe();
+        Integer b = nextProbe();
+        return a <= b ? set.subSet(a, true, b, false) : set.subSet(b, true, a, false);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void iteration(Blackhole blackhole) {
+        for (Integer e : set) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void descendingIteration(Blackhole blackhole) {
+        for (Integer e : set.descendingSet()) {
+            blackhole.consume(e);
+        }
+    }
+}
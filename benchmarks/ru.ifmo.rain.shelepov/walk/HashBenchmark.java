@@ -0,0 +1,99 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing one file with buffered read strategies. The file stays in the page cache, so this
+ * measures copying and hashing rather than the disk. Strategies that don't use a buffer of the
+ * given size are in {@link MappedHashBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+    @Param({"4096", "1048576", "268435456"})
+    private long fileSize;
+
+    @Param({"8192", "65536", "1048576"})
+    private int bufferSize;
+
+    @Param({"stream", "channel"})
+    private String strategy;
+
+    @Param({"fnv"})
+    private String hash;
+
+    private Path dir;
+    private Path file;
+    private HashFunction function;
+    private byte[] array;
+    private ByteBuffer buffer;
+    private byte[] digest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WalkException {
+        dir = Files.createTempDirectory("hash-benchmark");
+        file = dir.resolve("file");
+        SyntheticTrees.file(file, fileSize, new Random(2389472394L));
+        function = HashFunctions.factory(hash).create();
+        array = new byte[bufferSize];
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+        digest = new byte[function.length()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticTrees.delete(dir);
+    }
+
+    @Benchmark
+    public byte[] hashFile() throws IOException {
+        switch (strategy) {
+            case "stream":
+                return stream();
+            case "channel":
+                return channel();
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+    }
+
+    private byte[] stream() throws IOException {
+        function.reset();
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(array)) >= 0) {
+                function.update(ByteBuffer.wrap(array, 0, read));
+            }
+        }
+        function.digest(digest);
+        return digest;
+    }
+
+    private byte[] channel() throws IOException {
+        function.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                function.update(buffer);
+                buffer.clear();
+            }
+        }
+        function.digest(digest);
+        return digest;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing one file by mapping it whole and with {@link FileHasher}, which picks between its own
+ * buffer and mapping. Neither depends on a buffer size, unlike {@link HashBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedHashBenchmark {
+    @Param({"4096", "1048576", "268435456"})
+    private long fileSize;
+
+    @Param({"mmap", "hasher"})
+    private String strategy;
+
+    @Param({"fnv"})
+    private String hash;
+
+    private Path dir;
+    private Path file;
+    private HashFunction function;
+    private FileHasher hasher;
+    private byte[] digest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WalkException {
+        dir = Files.createTempDirectory("hash-benchmark");
+        file = dir.resolve("file");
+        SyntheticTrees.file(file, fileSize, new Random(2389472394L));
+        HashFunction.Factory factory = HashFunctions.factory(hash);
+        function = factory.create();
+        hasher = new FileHasher(factory.create());
+        digest = new byte[function.length()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticTrees.delete(dir);
+    }
+
+    @Benchmark
+    public byte[] hashFile() throws IOException {
+        switch (strategy) {
+            case "mmap":
+                return mmap();
+            case "hasher":
+                return hasher.hash(file);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+    }
+
+    private byte[] mmap() throws IOException {
+        function.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            function.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        function.digest(digest);
+        return digest;
+    }
+}
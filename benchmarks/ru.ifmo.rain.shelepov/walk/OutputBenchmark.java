@@ -0,0 +1,86 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing walk records to a channel that drops the bytes: the original {@code String.format}
+ * through a {@link BufferedWriter} against {@link RecordWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(OutputBenchmark.RECORDS)
+public class OutputBenchmark {
+    static final int RECORDS = 1 << 12;
+
+    private final WritableByteChannel discard = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private Path[] paths;
+    private int[] hashes;
+    private byte[][] digests;
+    private Writer formatWriter;
+    private RecordWriter recordWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(730498234L);
+        paths = new Path[RECORDS];
+        hashes = new int[RECORDS];
+        digests = new byte[RECORDS][Integer.BYTES];
+        for (int i = 0; i < RECORDS; i++) {
+            paths[i] = Paths.get("/home/user/projects/walk", "dir" + random.nextInt(100), "file" + i + ".txt");
+            hashes[i] = random.nextInt();
+            HashFunctions.putInt(digests[i], hashes[i]);
+        }
+        formatWriter = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8));
+        recordWriter = new RecordWriter(discard, RecordWriter.Format.TEXT, Integer.BYTES);
+    }
+
+    @Benchmark
+    public void format() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            formatWriter.write(String.format("%08x %s\n", hashes[i], paths[i]));
+        }
+        formatWriter.flush();
+    }
+
+    @Benchmark
+    public void recordWriter() throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            recordWriter.write(digests[i], paths[i]);
+        }
+        recordWriter.flush();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.FileVisitResult;
+import java.nio.file.SimpleFileVisitor;
+import java.util.Random;
+
+/**
+ * Generates reproducible files and directory trees for the walk benchmarks.
+ */
+final class SyntheticTrees {
+    private static final int CHUNK = 1 << 16;
+
+    private SyntheticTrees() {
+    }
+
+    static void file(Path file, long size, Random random) throws IOException {
+        byte[] chunk = new byte[CHUNK];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += CHUNK) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(CHUNK, size - written));
+            }
+        }
+    }
+
+    /**
+     * Creates a tree of the given shape under {@code root}.
+     *
+     * @param shape {@code deep}: a chain of 256 directories with 4 files of 4K in each,
+     *              {@code wide}: one directory with 20000 files of 1K,
+     *              {@code tiny}: 100 directories with 1000 files of 64 bytes each,
+     *              {@code huge}: two files of 512M
+     */
+    static void tree(Path root, String shape) throws IOException {
+        Random random = new Random(8045702348L);
+        Files.createDirectories(root);
+        switch (shape) {
+            case "deep":
+                Path dir = root;
+                for (int i = 0; i < 256; i++) {
+                    dir = Files.createDirectory(dir.resolve("d" + i));
+                    files(dir, 4, 4 << 10, random);
+                }
+                break;
+            case "wide":
+                files(root, 20000, 1 << 10, random);
+                break;
+            case "tiny":
+                for (int i = 0; i < 100; i++) {
+                    files(Files.createDirectory(root.resolve("d" + i)), 1000, 64, random);
+                }
+                break;
+            case "huge":
+                files(root, 2, 512L << 20, random);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tree shape: " + shape);
+        }
+    }
+
+    private static void files(Path dir, int count, long size, Random random) throws IOException {
+        for (int i = 0; i < count; i++) {
+            file(dir.resolve("f" + i), size, random);
+        }
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
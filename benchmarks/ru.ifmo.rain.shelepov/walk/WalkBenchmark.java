@@ -0,0 +1,65 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@link RecursiveWalk} runs over generated trees. Trees are created once per trial and stay
+ * in the page cache, drop the caches between trials to measure cold runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WalkBenchmark {
+    @Param({"deep", "wide", "tiny", "huge"})
+    private String shape;
+
+    @Param({"sequential", "parallel", "pipeline"})
+    private String mode;
+
+    @Param({"4"})
+    private int threads;
+
+    private Path dir;
+    private String[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("walk-benchmark");
+        Path root = dir.resolve("root");
+        SyntheticTrees.tree(root, shape);
+        Path input = Files.write(dir.resolve("input.txt"), List.of(root.toString()));
+        String output = dir.resolve("output.txt").toString();
+        switch (mode) {
+            case "sequential":
+                args = new String[]{input.toString(), output};
+                break;
+            case "parallel":
+                args = new String[]{"--threads", Integer.toString(threads), input.toString(), output};
+                break;
+            case "pipeline":
+                args = new String[]{"--pipeline", "--threads", Integer.toString(threads), input.toString(), output};
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticTrees.delete(dir);
+    }
+
+    @Benchmark
+    public void walk() throws WalkException {
+        RecursiveWalk.run(args);
+    }
+}
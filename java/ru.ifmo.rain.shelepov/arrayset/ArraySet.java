@@ -2,14 +2,22 @@ package ru.ifmo.rain.shelepov.arrayset;
 import java.util.*;
 
 import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     private final Comparator<? super E> comparator;
     private final List<E> data;
+    private final EytzingerIndex<E> index;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+    private ArraySet<E> descendingSet;
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+    private static final ArraySet<?> EMPTY = new ArraySet<>();
 
     public ArraySet() {
-        comparator = null;
-        data = Collections.emptyList();
+        this(Collections.emptyList(), null);
     }
 
     public ArraySet(Collection<? extends E> collection) {
@@ -17,63 +25,163 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     public ArraySet(Collection<? extends E> collection, Comparator<? super E> comp) {
-        comparator = comp;
-        TreeSet<E> set = new TreeSet<>(comp);
-        set.addAll(collection);
-        data = new ArrayList<>(set);
+        this(sortedList(collection, comp), comp);
     }
 
     public ArraySet(List<E> list, Comparator<? super E> comp) {
+        this(list, comp, null, 0, list.size(), false);
+    }
+
+    private ArraySet(List<E> list, Comparator<? super E> comp, EytzingerIndex<E> index,
+                     int from, int to, boolean descending) {
         comparator = comp;
         data = list;
+        this.index = index;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private ArraySet(ArraySet<E> other) {
+        this(other.data, other.comparator, other.index, other.from, other.to, !other.descending);
+        descendingSet = other;
+    }
+
+    /**
+     * Returns a set with the same elements whose lookups go through a cache-friendly
+     * {@link EytzingerIndex}. Iteration and views still use the sorted array.
+     */
+    @SuppressWarnings("unchecked")
+    public ArraySet<E> indexed() {
+        if (index != null) {
+            return this;
+        }
+        Comparator<? super E> order = comparator != null ? comparator : (Comparator<? super E>) Comparator.naturalOrder();
+        return new ArraySet<>(data, comparator, new EytzingerIndex<>(data, order), from, to, descending);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> sortedList(Collection<? extends E> collection, Comparator<? super E> comp) {
+        E[] array = (E[]) collection.toArray();
+        if (collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comp)) {
+            return Arrays.asList(array);
+        }
+
+        Comparator<? super E> order = comp != null ? comp : (Comparator<? super E>) Comparator.naturalOrder();
+        if (!isSorted(array, order)) {
+            if (array.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(array, order);
+            } else {
+                Arrays.sort(array, order);
+            }
+        }
+
+        int size = 0;
+        for (E e : array) {
+            if (size == 0 || order.compare(array[size - 1], e) != 0) {
+                array[size++] = e;
+            }
+        }
+        return Arrays.asList(size == array.length ? array : Arrays.copyOf(array, size));
+    }
+
+    private static <E> boolean isSorted(E[] array, Comparator<? super E> order) {
+        for (int i = 1; i < array.length; i++) {
+            if (order.compare(array[i - 1], array[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public Iterator<E> iterator() {
-        return Collections.unmodifiableList(data).iterator();
+        return new Iterator<>() {
+            private int cursor = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return validIndex(cursor);
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E e = data.get(cursor);
+                cursor += descending ? -1 : 1;
+                return e;
+            }
+        };
     }
 
     private E get(int index) {
-        if (index >= data.size() || index < 0) {
+        if (index < 0) {
             return null;
         }
 
         return data.get(index);
     }
 
+    @SuppressWarnings("unchecked")
     private int binarySearch(E e) {
-        return Collections.binarySearch(data, e, comparator);
+        if (index != null) {
+            int ind = index.binarySearch(e);
+            if (ind >= from && ind < to) {
+                return ind;
+            }
+            int insertion = ind >= 0 ? ind : abs(ind) - 1;
+            return -min(max(insertion, from), to) - 1;
+        }
+        if (data instanceof SearchableList) {
+            return ((SearchableList<E>) data).binarySearch(from, to, e);
+        }
+
+        int l = from;
+        int r = to - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            int cmp = compare(data.get(m), e);
+            if (cmp < 0) {
+                l = m + 1;
+            } else if (cmp > 0) {
+                r = m - 1;
+            } else {
+                return m;
+            }
+        }
+        return -l - 1;
     }
 
     private boolean validIndex(int index) {
-        return index >= 0 && index < data.size();
+        return index >= from && index < to;
     }
 
-    private int find(E e, int foundShift, int notFoundShift) {
+    private int rawFind(E e, int foundShift, int notFoundShift) {
         int ind = binarySearch(e);
-        if (ind >= 0) {
-            ind += foundShift;
-            return validIndex(ind) ? ind : -1;
-        } else {
-            ind = abs(ind) - 1 + notFoundShift;
-            return validIndex(ind) ? ind : -1;
-        }
+        return ind >= 0 ? ind + foundShift : abs(ind) - 1 + notFoundShift;
+    }
+
+    private int find(E e, int foundShift, int notFoundShift) {
+        int ind = rawFind(e, foundShift, notFoundShift);
+        return validIndex(ind) ? ind : -1;
     }
 
     private int lowerIndex(E e) {
-        return find(e, -1, -1);
+        return descending ? find(e, 1, 0) : find(e, -1, -1);
     }
 
     private int floorIndex(E e) {
-        return find(e, 0, -1);
+        return descending ? find(e, 0, 0) : find(e, 0, -1);
     }
 
     private int ceilingIndex(E e) {
-        return find(e, 0, 0);
+        return descending ? find(e, 0, -1) : find(e, 0, 0);
     }
 
     private int higherIndex(E e) {
-        return find(e, 1, 0);
+        return descending ? find(e, -1, -1) : find(e, 1, 0);
     }
 
     @Override
@@ -108,8 +216,11 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     }
 
     @Override
-    public NavigableSet<E> descendingSet() {
-        return new ArraySet<>(new ReversedListView<>(data), Collections.reverseOrder(comparator));
+    public ArraySet<E> descendingSet() {
+        if (descendingSet == null) {
+            descendingSet = new ArraySet<>(this);
+        }
+        return descendingSet;
     }
 
     @Override
@@ -117,10 +228,23 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return descendingSet().iterator();
     }
 
-    private boolean invalidBounds(int l, int r) {
-        return (l < 0 || r < 0 || l >= data.size() || r >= data.size() || r < l);
+    @SuppressWarnings("unchecked")
+    private ArraySet<E> view(int l, int r) {
+        if (l >= r) {
+            return comparator == null && !descending
+                    ? (ArraySet<E>) EMPTY
+                    : new ArraySet<>(Collections.emptyList(), comparator, null, 0, 0, descending);
+        }
+        return l == from && r == to ? this : new ArraySet<>(data, comparator, index, l, r, descending);
     }
 
+    private int lowBound(E e, boolean inclusive) {
+        return inclusive ? rawFind(e, 0, 0) : rawFind(e, 1, 0);
+    }
+
+    private int highBound(E e, boolean inclusive) {
+        return inclusive ? rawFind(e, 1, 0) : rawFind(e, 0, 0);
+    }
 
     @SuppressWarnings("unchecked")
     private int compare(E a, E b) {
@@ -131,17 +255,18 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         }
     }
 
+    private int viewCompare(E a, E b) {
+        return descending ? compare(b, a) : compare(a, b);
+    }
+
     @Override
     public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
-        if (compare(fromElement, toElement) > 0) {
+        if (viewCompare(fromElement, toElement) > 0) {
             throw new IllegalArgumentException();
         }
-        int l = fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
-        int r = toInclusive ? floorIndex(toElement) : lowerIndex(toElement);
-        if (invalidBounds(l, r)) {
-            return new ArraySet<>(Collections.emptyList(), comparator);
-        }
-        return new ArraySet<>(data.subList(l, r + 1), comparator);
+        return descending
+                ? view(lowBound(toElement, toInclusive), highBound(fromElement, fromInclusive))
+                : view(lowBound(fromElement, fromInclusive), highBound(toElement, toInclusive));
     }
 
     @Override
@@ -151,20 +276,12 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public NavigableSet<E> headSet(E toElement, boolean inclusive) {
-        try {
-            return subSet(first(), true, toElement, inclusive);
-        } catch (IllegalArgumentException | NoSuchElementException e) {
-            return new ArraySet<>(Collections.emptyList(), comparator);
-        }
+        return descending ? view(lowBound(toElement, inclusive), to) : view(from, highBound(toElement, inclusive));
     }
 
     @Override
     public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
-        try {
-            return subSet(fromElement, inclusive, last(), true);
-        } catch (IllegalArgumentException | NoSuchElementException e) {
-            return new ArraySet<>(Collections.emptyList(), comparator);
-        }
+        return descending ? view(from, highBound(fromElement, inclusive)) : view(lowBound(fromElement, inclusive), to);
     }
 
     @Override
@@ -184,12 +301,12 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
 
     @Override
     public int size() {
-        return data.size();
+        return to - from;
     }
 
     @Override
     public Comparator<? super E> comparator() {
-        return comparator;
+        return descending ? Collections.reverseOrder(comparator) : comparator;
     }
 
     private void checkEmptiness() {
@@ -201,18 +318,22 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
     @Override
     public E first() {
         checkEmptiness();
-        return data.get(0);
+        return data.get(descending ? to - 1 : from);
     }
 
     @Override
     public E last() {
         checkEmptiness();
-        return data.get(data.size() - 1);
+        return data.get(descending ? from : to - 1);
     }
 
     @Override
     public Object[] toArray() {
-        return data.toArray();
+        Object[] result = data.subList(from, to).toArray();
+        if (descending) {
+            Collections.reverse(Arrays.asList(result));
+        }
+        return result;
     }
 
     @Override
@@ -222,4 +343,124 @@ public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
         return (o != null && binarySearch((E) o) >= 0);
     }
 
+    private E at(int position) {
+        return data.get(descending ? to - 1 - position : from + position);
+    }
+
+    // First position not less than e, searching exponentially from start
+    private int gallop(E e, int start) {
+        int n = size();
+        int l = start;
+        int r = start;
+        for (int step = 1; r < n && viewCompare(at(r), e) < 0; step <<= 1) {
+            l = r + 1;
+            r = start + step;
+        }
+        r = min(r, n);
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (viewCompare(at(m), e) < 0) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    private static boolean sameOrder(ArraySet<?> a, ArraySet<?> b) {
+        return Objects.equals(a.comparator(), b.comparator());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArraySet<E> withElements(Object[] elements, int size) {
+        return new ArraySet<>((List<E>) Arrays.asList(Arrays.copyOf(elements, size)), comparator());
+    }
+
+    private static <E> ArraySet<E> merge(ArraySet<E> a, ArraySet<E> b, boolean keepCommon) {
+        Object[] result = new Object[a.size() + b.size()];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            int cmp = i == a.size() ? 1 : j == b.size() ? -1 : a.viewCompare(a.at(i), b.at(j));
+            if (cmp < 0) {
+                result[n++] = a.at(i++);
+            } else if (cmp > 0) {
+                result[n++] = b.at(j++);
+            } else {
+                if (keepCommon) {
+                    result[n++] = a.at(i);
+                }
+                i++;
+                j++;
+            }
+        }
+        return a.withElements(result, n);
+    }
+
+    private static <E> ArraySet<E> filter(ArraySet<E> a, ArraySet<E> b, boolean keepCommon) {
+        return filter(a, b, keepCommon, false);
+    }
+
+    // With emitMatches, common elements are taken from b, so instances of b are kept while scanning a
+    private static <E> ArraySet<E> filter(ArraySet<E> a, ArraySet<E> b, boolean keepCommon, boolean emitMatches) {
+        Object[] result = new Object[a.size()];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < a.size(); i++) {
+            E e = a.at(i);
+            j = b.gallop(e, j);
+            if ((j < b.size() && a.viewCompare(b.at(j), e) == 0) == keepCommon) {
+                result[n++] = emitMatches ? b.at(j) : e;
+            }
+        }
+        return a.withElements(result, n);
+    }
+
+    /**
+     * Elements of both sets ordered by the comparator of {@code a}. Sets sharing a comparator
+     * are merged linearly; otherwise the result is sorted from scratch.
+     */
+    public static <E> ArraySet<E> union(ArraySet<E> a, ArraySet<E> b) {
+        if (!sameOrder(a, b)) {
+            List<E> all = new ArrayList<>(a);
+            all.addAll(b);
+            return new ArraySet<>((Collection<E>) all, a.comparator());
+        }
+        return merge(a, b, true);
+    }
+
+    /**
+     * Elements of {@code a} that are also in {@code b}. The smaller set is scanned
+     * while positions in the larger one are found by galloping search.
+     */
+    public static <E> ArraySet<E> intersect(ArraySet<E> a, ArraySet<E> b) {
+        if (!sameOrder(a, b)) {
+            Object[] common = a.stream().filter(b::contains).toArray();
+            return a.withElements(common, common.length);
+        }
+        return a.size() <= b.size() ? filter(a, b, true) : filter(b, a, true, true);
+    }
+
+    /**
+     * Elements of {@code a} that are not in {@code b}.
+     */
+    public static <E> ArraySet<E> difference(ArraySet<E> a, ArraySet<E> b) {
+        if (!sameOrder(a, b)) {
+            Object[] rest = a.stream().filter(e -> !b.contains(e)).toArray();
+            return a.withElements(rest, rest.length);
+        }
+        return filter(a, b, false);
+    }
+
+    /**
+     * Elements that belong to exactly one of the sets, ordered by the comparator of {@code a}.
+     */
+    public static <E> ArraySet<E> symmetricDifference(ArraySet<E> a, ArraySet<E> b) {
+        if (!sameOrder(a, b)) {
+            return union(difference(a, b), difference(b, a));
+        }
+        return merge(a, b, false);
+    }
 }
\ No newline at end of file
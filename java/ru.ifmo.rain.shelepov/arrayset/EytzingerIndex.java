@@ -0,0 +1,56 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only search index keeping elements of a sorted list in BFS (Eytzinger) order.
+ * The first levels of the implicit tree share a few cache lines, so a lookup touches
+ * far fewer distinct lines than a binary search over the sorted list.
+ */
+class EytzingerIndex<E> {
+    private final Object[] tree;
+    private final int[] rank;
+    private final Comparator<? super E> order;
+
+    EytzingerIndex(List<E> sorted, Comparator<? super E> order) {
+        this.order = order;
+        tree = new Object[sorted.size() + 1];
+        rank = new int[sorted.size() + 1];
+        fill(sorted, 0, 1);
+    }
+
+    private int fill(List<E> sorted, int i, int k) {
+        if (k < tree.length) {
+            i = fill(sorted, i, 2 * k);
+            tree[k] = sorted.get(i);
+            rank[k] = i++;
+            i = fill(sorted, i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E at(int k) {
+        return (E) tree[k];
+    }
+
+    int size() {
+        return tree.length - 1;
+    }
+
+    /**
+     * Same contract as {@link java.util.Collections#binarySearch(List, Object, Comparator)}.
+     */
+    int binarySearch(E e) {
+        int k = 1;
+        while (k < tree.length) {
+            k = 2 * k + (order.compare(at(k), e) < 0 ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        if (k == 0) {
+            return -size() - 1;
+        }
+        return order.compare(at(k), e) == 0 ? rank[k] : -rank[k] - 1;
+    }
+}
@@ -0,0 +1,295 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import java.util.*;
+
+public class IntArraySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] data;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    public IntArraySet() {
+        this(EMPTY, 0, 0, false);
+    }
+
+    public IntArraySet(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        data = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+        from = 0;
+        to = size;
+        descending = false;
+    }
+
+    public IntArraySet(Collection<? extends Integer> collection) {
+        this(toArray(collection));
+    }
+
+    private IntArraySet(int[] data, int from, int to, boolean descending) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private static int[] toArray(Collection<? extends Integer> collection) {
+        int[] values = new int[collection.size()];
+        int i = 0;
+        for (Integer e : collection) {
+            values[i++] = Objects.requireNonNull(e);
+        }
+        return values;
+    }
+
+    private int search(int e) {
+        return Arrays.binarySearch(data, from, to, e);
+    }
+
+    // Raw positions below are in ascending order and may point one step outside of [from, to)
+
+    private int rawFloor(int e) {
+        int ind = search(e);
+        return ind >= 0 ? ind : -ind - 2;
+    }
+
+    private int rawCeiling(int e) {
+        int ind = search(e);
+        return ind >= 0 ? ind : -ind - 1;
+    }
+
+    private int rawLower(int e) {
+        int ind = search(e);
+        return ind >= 0 ? ind - 1 : -ind - 2;
+    }
+
+    private int rawHigher(int e) {
+        int ind = search(e);
+        return ind >= 0 ? ind + 1 : -ind - 1;
+    }
+
+    private int valid(int ind) {
+        return ind >= from && ind < to ? ind : -1;
+    }
+
+    private int lowerIndex(int e) {
+        return valid(descending ? rawHigher(e) : rawLower(e));
+    }
+
+    private int floorIndex(int e) {
+        return valid(descending ? rawCeiling(e) : rawFloor(e));
+    }
+
+    private int ceilingIndex(int e) {
+        return valid(descending ? rawFloor(e) : rawCeiling(e));
+    }
+
+    private int higherIndex(int e) {
+        return valid(descending ? rawLower(e) : rawHigher(e));
+    }
+
+    private Integer get(int index) {
+        return index < 0 ? null : data[index];
+    }
+
+    private int getInt(int index) {
+        if (index < 0) {
+            throw new NoSuchElementException();
+        }
+        return data[index];
+    }
+
+    public boolean containsInt(int e) {
+        return search(e) >= 0;
+    }
+
+    public int lowerInt(int e) {
+        return getInt(lowerIndex(e));
+    }
+
+    public int floorInt(int e) {
+        return getInt(floorIndex(e));
+    }
+
+    public int ceilingInt(int e) {
+        return getInt(ceilingIndex(e));
+    }
+
+    public int higherInt(int e) {
+        return getInt(higherIndex(e));
+    }
+
+    public int firstInt() {
+        checkEmptiness();
+        return descending ? data[to - 1] : data[from];
+    }
+
+    public int lastInt() {
+        checkEmptiness();
+        return descending ? data[from] : data[to - 1];
+    }
+
+    public int[] toIntArray() {
+        int[] result = Arrays.copyOfRange(data, from, to);
+        if (descending) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                int tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Integer lower(Integer e) {
+        return get(lowerIndex(e));
+    }
+
+    @Override
+    public Integer floor(Integer e) {
+        return get(floorIndex(e));
+    }
+
+    @Override
+    public Integer ceiling(Integer e) {
+        return get(ceilingIndex(e));
+    }
+
+    @Override
+    public Integer higher(Integer e) {
+        return get(higherIndex(e));
+    }
+
+    @Override
+    public Integer pollFirst() {
+        throw new UnsupportedOperationException("Set is unmodifiable");
+    }
+
+    @Override
+    public Integer pollLast() {
+        throw new UnsupportedOperationException("Set is unmodifiable");
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int cursor = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return cursor >= from && cursor < to;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int e = data[cursor];
+                cursor += descending ? -1 : 1;
+                return e;
+            }
+        };
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return new IntArraySet(data, from, to, !descending);
+    }
+
+    @Override
+    public Iterator<Integer> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    private IntArraySet view(int l, int r) {
+        return l < r ? new IntArraySet(data, l, r, descending) : new IntArraySet(EMPTY, 0, 0, descending);
+    }
+
+    private int lowBound(int e, boolean inclusive) {
+        return inclusive ? rawCeiling(e) : rawHigher(e);
+    }
+
+    private int highBound(int e, boolean inclusive) {
+        return (inclusive ? rawFloor(e) : rawLower(e)) + 1;
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        if (descending ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return descending
+                ? view(lowBound(toElement, toInclusive), highBound(fromElement, fromInclusive))
+                : view(lowBound(fromElement, fromInclusive), highBound(toElement, toInclusive));
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement, boolean inclusive) {
+        return descending ? view(lowBound(toElement, inclusive), to) : view(from, highBound(toElement, inclusive));
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement, boolean inclusive) {
+        return descending ? view(from, highBound(fromElement, inclusive)) : view(lowBound(fromElement, inclusive), to);
+    }
+
+    @Override
+    public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    private void checkEmptiness() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+}
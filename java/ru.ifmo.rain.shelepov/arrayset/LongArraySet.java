@@ -0,0 +1,295 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import java.util.*;
+
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private static final long[] EMPTY = new long[0];
+
+    private final long[] data;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    public LongArraySet() {
+        this(EMPTY, 0, 0, false);
+    }
+
+    public LongArraySet(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        data = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+        from = 0;
+        to = size;
+        descending = false;
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(toArray(collection));
+    }
+
+    private LongArraySet(long[] data, int from, int to, boolean descending) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private static long[] toArray(Collection<? extends Long> collection) {
+        long[] values = new long[collection.size()];
+        int i = 0;
+        for (Long e : collection) {
+            values[i++] = Objects.requireNonNull(e);
+        }
+        return values;
+    }
+
+    private int search(long e) {
+        return Arrays.binarySearch(data, from, to, e);
+    }
+
+    // Raw positions below are in ascending order and may point one step outside of [from, to)
+
+    private int rawFloor(long e) {
+        int ind = search(e);
+        return ind >= 0 ? ind : -ind - 2;
+    }
+
+    private int rawCeiling(long e) {
+        int ind = search(e);
+        return ind >= 0 ? ind : -ind - 1;
+    }
+
+    private int rawLower(long e) {
+        int ind = search(e);
+        return ind >= 0 ? ind - 1 : -ind - 2;
+    }
+
+    private int rawHigher(long e) {
+        int ind = search(e);
+        return ind >= 0 ? ind + 1 : -ind - 1;
+    }
+
+    private int valid(int ind) {
+        return ind >= from && ind < to ? ind : -1;
+    }
+
+    private int lowerIndex(long e) {
+        return valid(descending ? rawHigher(e) : rawLower(e));
+    }
+
+    private int floorIndex(long e) {
+        return valid(descending ? rawCeiling(e) : rawFloor(e));
+    }
+
+    private int ceilingIndex(long e) {
+        return valid(descending ? rawFloor(e) : rawCeiling(e));
+    }
+
+    private int higherIndex(long e) {
+        return valid(descending ? rawLower(e) : rawHigher(e));
+    }
+
+    private Long get(int index) {
+        return index < 0 ? null : data[index];
+    }
+
+    private long getLong(int index) {
+        if (index < 0) {
+            throw new NoSuchElementException();
+        }
+        return data[index];
+    }
+
+    public boolean containsLong(long e) {
+        return search(e) >= 0;
+    }
+
+    public long lowerLong(long e) {
+        return getLong(lowerIndex(e));
+    }
+
+    public long floorLong(long e) {
+        return getLong(floorIndex(e));
+    }
+
+    public long ceilingLong(long e) {
+        return getLong(ceilingIndex(e));
+    }
+
+    public long higherLong(long e) {
+        return getLong(higherIndex(e));
+    }
+
+    public long firstLong() {
+        checkEmptiness();
+        return descending ? data[to - 1] : data[from];
+    }
+
+    public long lastLong() {
+        checkEmptiness();
+        return descending ? data[from] : data[to - 1];
+    }
+
+    public long[] toLongArray() {
+        long[] result = Arrays.copyOfRange(data, from, to);
+        if (descending) {
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                long tmp = result[i];
+                result[i] = result[j];
+                result[j] = tmp;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Long lower(Long e) {
+        return get(lowerIndex(e));
+    }
+
+    @Override
+    public Long floor(Long e) {
+        return get(floorIndex(e));
+    }
+
+    @Override
+    public Long ceiling(Long e) {
+        return get(ceilingIndex(e));
+    }
+
+    @Override
+    public Long higher(Long e) {
+        return get(higherIndex(e));
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException("Set is unmodifiable");
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException("Set is unmodifiable");
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int cursor = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return cursor >= from && cursor < to;
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long e = data[cursor];
+                cursor += descending ? -1 : 1;
+                return e;
+            }
+        };
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return new LongArraySet(data, from, to, !descending);
+    }
+
+    @Override
+    public Iterator<Long> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    private LongArraySet view(int l, int r) {
+        return l < r ? new LongArraySet(data, l, r, descending) : new LongArraySet(EMPTY, 0, 0, descending);
+    }
+
+    private int lowBound(long e, boolean inclusive) {
+        return inclusive ? rawCeiling(e) : rawHigher(e);
+    }
+
+    private int highBound(long e, boolean inclusive) {
+        return (inclusive ? rawFloor(e) : rawLower(e)) + 1;
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        if (descending ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return descending
+                ? view(lowBound(toElement, toInclusive), highBound(fromElement, fromInclusive))
+                : view(lowBound(fromElement, fromInclusive), highBound(toElement, toInclusive));
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return descending ? view(lowBound(toElement, inclusive), to) : view(from, highBound(toElement, inclusive));
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return descending ? view(from, highBound(fromElement, inclusive)) : view(lowBound(fromElement, inclusive), to);
+    }
+
+    @Override
+    public SortedSet<Long> subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Long> headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Long> tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    private void checkEmptiness() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && containsLong((Long) o);
+    }
+}
@@ -0,0 +1,248 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * {@link ArraySet} over fixed-width keys stored in a file and read through memory-mapped buffers.
+ * Opening only maps the file, elements live in the page cache shared by all processes
+ * that open the same file. Sets ordered by {@link Codec#order()} of their codec compare keys in
+ * place during lookups, with other comparators every probe decodes an element.
+ */
+public final class MappedArraySet {
+    private static final int MAGIC = 0x41534554;
+    private static final int HEADER_SIZE = 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Unsigned lexicographic order of byte arrays, the order of {@link #bytes} codecs.
+     */
+    public static final Comparator<byte[]> UNSIGNED = Arrays::compareUnsigned;
+
+    private MappedArraySet() {
+    }
+
+    /**
+     * Fixed-width binary representation of set elements.
+     */
+    public interface Codec<E> {
+        int width();
+
+        void write(ByteBuffer buffer, E e);
+
+        E read(ByteBuffer buffer, int offset);
+
+        /**
+         * Order in which {@link #compare} compares encoded keys or {@code null} if it doesn't.
+         */
+        default Comparator<? super E> order() {
+            return null;
+        }
+
+        /**
+         * Compares the key encoded at {@code offset} with {@code e} in {@link #order()} without decoding it.
+         */
+        default int compare(ByteBuffer buffer, int offset, E e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static final Codec<Long> LONGS = new Codec<>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, Long e) {
+            buffer.putLong(e);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public Comparator<Long> order() {
+            return Comparator.naturalOrder();
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Long e) {
+            return Long.compare(buffer.getLong(offset), e);
+        }
+    };
+
+    /**
+     * Codec for byte arrays of the given length, usually paired with {@link #UNSIGNED}.
+     */
+    public static Codec<byte[]> bytes(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Key width should be positive");
+        }
+        return new Codec<>() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, byte[] e) {
+                if (e.length != width) {
+                    throw new IllegalArgumentException("Key of " + e.length + " bytes, expected " + width);
+                }
+                buffer.put(e);
+            }
+
+            @Override
+            public byte[] read(ByteBuffer buffer, int offset) {
+                byte[] e = new byte[width];
+                buffer.get(offset, e);
+                return e;
+            }
+
+            @Override
+            public Comparator<byte[]> order() {
+                return UNSIGNED;
+            }
+
+            @Override
+            public int compare(ByteBuffer buffer, int offset, byte[] e) {
+                int common = Math.min(width, e.length);
+                for (int i = 0; i < common; i++) {
+                    int cmp = Byte.compareUnsigned(buffer.get(offset + i), e[i]);
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                }
+                return Integer.compare(width, e.length);
+            }
+        };
+    }
+
+    /**
+     * Sorts the collection as {@link ArraySet#ArraySet(Collection, Comparator)} does,
+     * writes it to {@code file} and maps the result.
+     */
+    public static <E> ArraySet<E> write(Path file, Collection<? extends E> collection,
+                                        Comparator<? super E> comparator, Codec<E> codec) throws IOException {
+        ArraySet<E> sorted = new ArraySet<>(collection, comparator);
+        try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, codec.width()));
+            buffer.putInt(MAGIC).putInt(codec.width()).putLong(sorted.size());
+            for (E e : sorted) {
+                if (buffer.remaining() < codec.width()) {
+                    drain(channel, buffer);
+                }
+                codec.write(buffer, e);
+            }
+            drain(channel, buffer);
+        }
+        return open(file, comparator, codec);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Maps a file created by {@link #write}. The comparator has to be the one used for writing.
+     */
+    public static <E> ArraySet<E> open(Path file, Comparator<? super E> comparator, Codec<E> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a mapped set file: " + file);
+            }
+            int width = header.getInt();
+            long size = header.getLong();
+            if (width != codec.width()) {
+                throw new IOException("Key width " + width + " does not match codec width " + codec.width());
+            }
+            if (size > Integer.MAX_VALUE || HEADER_SIZE + size * width > channel.size()) {
+                throw new IOException("Corrupted mapped set file: " + file);
+            }
+            Comparator<? super E> order = codec.order();
+            boolean inPlace = order != null
+                    && (order.equals(comparator) || comparator == null && order.equals(Comparator.naturalOrder()));
+            return new ArraySet<>(inPlace ? new SearchableMappedList<>(channel, (int) size, codec)
+                    : new MappedList<>(channel, (int) size, codec), comparator);
+        }
+    }
+
+    private static class MappedList<E> extends AbstractList<E> implements RandomAccess {
+        private final MappedByteBuffer[] chunks;
+        private final int chunkLength;
+        private final int size;
+        private final Codec<E> codec;
+
+        MappedList(FileChannel channel, int size, Codec<E> codec) throws IOException {
+            this.size = size;
+            this.codec = codec;
+            chunkLength = Integer.MAX_VALUE / codec.width();
+            chunks = new MappedByteBuffer[size == 0 ? 0 : (size - 1) / chunkLength + 1];
+            for (int i = 0; i < chunks.length; i++) {
+                long first = (long) i * chunkLength;
+                long length = Math.min(chunkLength, size - first) * codec.width();
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * codec.width(), length);
+            }
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return codec.read(chunks[index / chunkLength], (index % chunkLength) * codec.width());
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        int compareAt(int index, E e) {
+            return codec.compare(chunks[index / chunkLength], (index % chunkLength) * codec.width(), e);
+        }
+    }
+
+    // Elements are compared by the codec, so probes neither decode nor allocate
+    private static class SearchableMappedList<E> extends MappedList<E> implements SearchableList<E> {
+        SearchableMappedList(FileChannel channel, int size, Codec<E> codec) throws IOException {
+            super(channel, size, codec);
+        }
+
+        @Override
+        public int binarySearch(int from, int to, E e) {
+            int l = from;
+            int r = to - 1;
+            while (l <= r) {
+                int m = (l + r) >>> 1;
+                int cmp = compareAt(m, e);
+                if (cmp < 0) {
+                    l = m + 1;
+                } else if (cmp > 0) {
+                    r = m - 1;
+                } else {
+                    return m;
+                }
+            }
+            return -l - 1;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+/**
+ * List that can search its elements in the order of the {@link ArraySet} built over it without
+ * materializing them.
+ */
+interface SearchableList<E> {
+    /**
+     * Returns index of {@code e} in the sorted range {@code [from, to)} or {@code -(insertion point) - 1}.
+     */
+    int binarySearch(int from, int to, E e);
+}
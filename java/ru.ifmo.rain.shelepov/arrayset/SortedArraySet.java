@@ -0,0 +1,550 @@
+package ru.ifmo.rain.shelepov.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable navigable set on top of {@link ArraySet}. Updates are buffered in a small sorted
+ * delta of inserts and tombstones, which is merged into a new sorted array in one linear pass
+ * once it grows past the merge threshold. Queries combine both layers.
+ */
+public class SortedArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int DEFAULT_MERGE_THRESHOLD = 1024;
+    private static final int DELTA_RATIO = 16;
+
+    private final Storage<E> storage;
+    private final E low;
+    private final boolean lowInclusive;
+    private final E high;
+    private final boolean highInclusive;
+    private final boolean descending;
+
+    private static class Storage<E> {
+        private final Comparator<? super E> comparator;
+        private final int mergeThreshold;
+        private final TreeMap<E, Boolean> delta;
+        private ArraySet<E> base;
+        private int size;
+
+        Storage(ArraySet<E> base, Comparator<? super E> comparator, int mergeThreshold) {
+            this.comparator = comparator;
+            this.mergeThreshold = mergeThreshold;
+            this.delta = new TreeMap<>(comparator);
+            this.base = base;
+            this.size = base.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        int compare(E a, E b) {
+            return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+        }
+
+        boolean contains(E e) {
+            Boolean present = delta.get(e);
+            return present != null ? present : base.contains(e);
+        }
+
+        boolean isLive(E e) {
+            return delta.get(e) != Boolean.FALSE;
+        }
+
+        boolean add(E e) {
+            Boolean present = delta.get(e);
+            if (present != null) {
+                if (present) {
+                    return false;
+                }
+                delta.remove(e);
+            } else {
+                if (base.contains(e)) {
+                    return false;
+                }
+                delta.put(e, Boolean.TRUE);
+            }
+            size++;
+            mergeIfNeeded();
+            return true;
+        }
+
+        boolean remove(E e) {
+            Boolean present = delta.get(e);
+            if (present != null) {
+                if (!present) {
+                    return false;
+                }
+                delta.remove(e);
+            } else {
+                if (!base.contains(e)) {
+                    return false;
+                }
+                delta.put(e, Boolean.FALSE);
+            }
+            size--;
+            mergeIfNeeded();
+            return true;
+        }
+
+        void clear() {
+            base = new ArraySet<>(Collections.emptyList(), comparator);
+            delta.clear();
+            size = 0;
+        }
+
+        private void mergeIfNeeded() {
+            if (delta.size() > Math.max(mergeThreshold, base.size() / DELTA_RATIO)) {
+                merge();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void merge() {
+            if (delta.isEmpty()) {
+                return;
+            }
+            Object[] result = new Object[size];
+            int n = 0;
+            Iterator<E> baseIt = base.iterator();
+            Iterator<Map.Entry<E, Boolean>> deltaIt = delta.entrySet().iterator();
+            E b = baseIt.hasNext() ? baseIt.next() : null;
+            Map.Entry<E, Boolean> d = deltaIt.hasNext() ? deltaIt.next() : null;
+            while (b != null || d != null) {
+                int cmp = b == null ? 1 : d == null ? -1 : compare(b, d.getKey());
+                if (cmp < 0) {
+                    result[n++] = b;
+                    b = baseIt.hasNext() ? baseIt.next() : null;
+                } else {
+                    if (cmp > 0) {
+                        result[n++] = d.getKey();
+                    } else {
+                        b = baseIt.hasNext() ? baseIt.next() : null;
+                    }
+                    d = deltaIt.hasNext() ? deltaIt.next() : null;
+                }
+            }
+            base = new ArraySet<>(Arrays.asList((E[]) result), comparator);
+            delta.clear();
+        }
+
+        // Smallest live element greater than (or equal to) e; null e means no bound
+        E higher(E e, boolean inclusive) {
+            E b = e == null ? (base.isEmpty() ? null : base.first()) : inclusive ? base.ceiling(e) : base.higher(e);
+            while (b != null && !isLive(b)) {
+                b = base.higher(b);
+            }
+            return min(b, firstInserted(e == null ? delta : delta.tailMap(e, inclusive)));
+        }
+
+        // Greatest live element lower than (or equal to) e; null e means no bound
+        E lower(E e, boolean inclusive) {
+            E b = e == null ? (base.isEmpty() ? null : base.last()) : inclusive ? base.floor(e) : base.lower(e);
+            while (b != null && !isLive(b)) {
+                b = base.lower(b);
+            }
+            E d = firstInserted((e == null ? delta : delta.headMap(e, inclusive)).descendingMap());
+            return b == null ? d : d == null ? b : compare(b, d) >= 0 ? b : d;
+        }
+
+        private E firstInserted(NavigableMap<E, Boolean> map) {
+            for (Map.Entry<E, Boolean> entry : map.entrySet()) {
+                if (entry.getValue()) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        private E min(E a, E b) {
+            return a == null ? b : b == null ? a : compare(a, b) <= 0 ? a : b;
+        }
+    }
+
+    public SortedArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public SortedArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public SortedArraySet(Collection<? extends E> collection) {
+        this(collection, null);
+    }
+
+    public SortedArraySet(Collection<? extends E> collection, Comparator<? super E> comparator) {
+        this(collection, comparator, DEFAULT_MERGE_THRESHOLD);
+    }
+
+    /**
+     * @param mergeThreshold minimal number of buffered updates that triggers a merge;
+     *                       large sets also allow the delta to grow up to a fixed fraction of their size
+     */
+    public SortedArraySet(Collection<? extends E> collection, Comparator<? super E> comparator, int mergeThreshold) {
+        this(new Storage<>(new ArraySet<>(collection, comparator), comparator, Math.max(1, mergeThreshold)),
+                null, false, null, false, false);
+    }
+
+    private SortedArraySet(Storage<E> storage, E low, boolean lowInclusive, E high, boolean highInclusive,
+                           boolean descending) {
+        this.storage = storage;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Merges all buffered updates into the sorted array.
+     */
+    public void flush() {
+        storage.merge();
+    }
+
+    private boolean isRoot() {
+        return low == null && high == null;
+    }
+
+    private boolean tooLow(E e) {
+        if (low == null) {
+            return false;
+        }
+        int cmp = storage.compare(e, low);
+        return cmp < 0 || cmp == 0 && !lowInclusive;
+    }
+
+    private boolean tooHigh(E e) {
+        if (high == null) {
+            return false;
+        }
+        int cmp = storage.compare(e, high);
+        return cmp > 0 || cmp == 0 && !highInclusive;
+    }
+
+    private boolean inRange(E e) {
+        return !tooLow(e) && !tooHigh(e);
+    }
+
+    private E inRangeOrNull(E e) {
+        return e != null && inRange(e) ? e : null;
+    }
+
+    private E lowest() {
+        return inRangeOrNull(storage.higher(low, low == null || lowInclusive));
+    }
+
+    private E highest() {
+        return inRangeOrNull(storage.lower(high, high == null || highInclusive));
+    }
+
+    private E ascendingCeiling(E e, boolean inclusive) {
+        return tooLow(e) ? lowest() : inRangeOrNull(storage.higher(e, inclusive));
+    }
+
+    private E ascendingFloor(E e, boolean inclusive) {
+        return tooHigh(e) ? highest() : inRangeOrNull(storage.lower(e, inclusive));
+    }
+
+    @Override
+    public E lower(E e) {
+        return descending ? ascendingCeiling(e, false) : ascendingFloor(e, false);
+    }
+
+    @Override
+    public E floor(E e) {
+        return descending ? ascendingCeiling(e, true) : ascendingFloor(e, true);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return descending ? ascendingFloor(e, true) : ascendingCeiling(e, true);
+    }
+
+    @Override
+    public E higher(E e) {
+        return descending ? ascendingFloor(e, false) : ascendingCeiling(e, false);
+    }
+
+    private E firstOrNull() {
+        return descending ? highest() : lowest();
+    }
+
+    private E lastOrNull() {
+        return descending ? lowest() : highest();
+    }
+
+    private E checkElement(E e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    @Override
+    public E first() {
+        return checkElement(firstOrNull());
+    }
+
+    @Override
+    public E last() {
+        return checkElement(lastOrNull());
+    }
+
+    @Override
+    public E pollFirst() {
+        E e = firstOrNull();
+        if (e != null) {
+            storage.remove(e);
+        }
+        return e;
+    }
+
+    @Override
+    public E pollLast() {
+        E e = lastOrNull();
+        if (e != null) {
+            storage.remove(e);
+        }
+        return e;
+    }
+
+    @Override
+    public boolean add(E e) {
+        Objects.requireNonNull(e);
+        if (!inRange(e)) {
+            throw new IllegalArgumentException("Element is out of range");
+        }
+        return storage.add(e);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        return o != null && inRange((E) o) && storage.remove((E) o);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return o != null && inRange((E) o) && storage.contains((E) o);
+    }
+
+    @Override
+    public void clear() {
+        if (isRoot()) {
+            storage.clear();
+        } else {
+            super.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        if (isRoot()) {
+            return storage.size;
+        }
+        int size = 0;
+        for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return firstOrNull() == null;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder(storage.comparator) : storage.comparator;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new MergingIterator();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new SortedArraySet<>(storage, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    private void checkBound(E e) {
+        if ((low != null && storage.compare(e, low) < 0) || (high != null && storage.compare(e, high) > 0)) {
+            throw new IllegalArgumentException("Bound is out of range");
+        }
+    }
+
+    private SortedArraySet<E> ascendingView(E newLow, boolean newLowInclusive, E newHigh, boolean newHighInclusive) {
+        if (newLow == null) {
+            newLow = low;
+            newLowInclusive = lowInclusive;
+        } else {
+            checkBound(newLow);
+            newLowInclusive &= !tooLow(newLow);
+        }
+        if (newHigh == null) {
+            newHigh = high;
+            newHighInclusive = highInclusive;
+        } else {
+            checkBound(newHigh);
+            newHighInclusive &= !tooHigh(newHigh);
+        }
+        return new SortedArraySet<>(storage, newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        Objects.requireNonNull(fromElement);
+        Objects.requireNonNull(toElement);
+        if (descending) {
+            if (storage.compare(fromElement, toElement) < 0) {
+                throw new IllegalArgumentException();
+            }
+            return ascendingView(toElement, toInclusive, fromElement, fromInclusive);
+        }
+        if (storage.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return ascendingView(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        Objects.requireNonNull(toElement);
+        return descending
+                ? ascendingView(toElement, inclusive, null, false)
+                : ascendingView(null, false, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        Objects.requireNonNull(fromElement);
+        return descending
+                ? ascendingView(null, false, fromElement, inclusive)
+                : ascendingView(fromElement, inclusive, null, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private class MergingIterator implements Iterator<E> {
+        private Iterator<E> baseIt;
+        private Iterator<Map.Entry<E, Boolean>> deltaIt;
+        private E nextBase;
+        private E nextDelta;
+        private E last;
+        private boolean removable;
+        private boolean stale;
+
+        MergingIterator() {
+            seek(null);
+        }
+
+        private void seek(E after) {
+            ArraySet<E> base = storage.base;
+            NavigableSet<E> baseRange;
+            NavigableMap<E, Boolean> deltaRange;
+            if (descending) {
+                E start = after != null ? after : high;
+                boolean inclusive = after == null && highInclusive;
+                baseRange = (start == null ? base : base.headSet(start, inclusive)).descendingSet();
+                deltaRange = (start == null ? storage.delta : storage.delta.headMap(start, inclusive)).descendingMap();
+            } else {
+                E start = after != null ? after : low;
+                boolean inclusive = after == null && lowInclusive;
+                baseRange = start == null ? base : base.tailSet(start, inclusive);
+                deltaRange = start == null ? storage.delta : storage.delta.tailMap(start, inclusive);
+            }
+            baseIt = baseRange.iterator();
+            deltaIt = deltaRange.entrySet().iterator();
+            advanceBase();
+            advanceDelta();
+            stale = false;
+        }
+
+        private void advanceBase() {
+            while (baseIt.hasNext()) {
+                E e = baseIt.next();
+                if (storage.isLive(e)) {
+                    nextBase = e;
+                    return;
+                }
+            }
+            nextBase = null;
+        }
+
+        private void advanceDelta() {
+            while (deltaIt.hasNext()) {
+                Map.Entry<E, Boolean> entry = deltaIt.next();
+                if (entry.getValue()) {
+                    nextDelta = entry.getKey();
+                    return;
+                }
+            }
+            nextDelta = null;
+        }
+
+        private boolean baseGoesFirst() {
+            if (nextDelta == null) {
+                return true;
+            }
+            if (nextBase == null) {
+                return false;
+            }
+            int cmp = storage.compare(nextBase, nextDelta);
+            return descending ? cmp > 0 : cmp < 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (stale) {
+                seek(last);
+            }
+            E e = baseGoesFirst() ? nextBase : nextDelta;
+            return e != null && inRange(e);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (baseGoesFirst()) {
+                last = nextBase;
+                advanceBase();
+            } else {
+                last = nextDelta;
+                advanceDelta();
+            }
+            removable = true;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            storage.remove(last);
+            removable = false;
+            stale = true;
+        }
+    }
+}
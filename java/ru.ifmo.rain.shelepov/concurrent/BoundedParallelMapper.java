@@ -0,0 +1,126 @@
+package ru.ifmo.rain.shelepov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.lang.Math.max;
+
+/**
+ * {@link ParallelMapper} for blocking functions: every element runs in its own thread and a
+ * semaphore shared by all {@link #map} calls limits how many run at once. Threads are virtual
+ * on runtimes that have them, otherwise they come from a cached pool of daemon threads.
+ */
+public class BoundedParallelMapper implements ParallelMapper {
+
+    private static final ThreadFactory THREAD_FACTORY = threadFactory();
+
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    private static ThreadFactory threadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(THREAD_FACTORY);
+        }
+    }
+
+    private static class TasksFuture<R> {
+        private final Object[] result;
+        private final AtomicInteger remaining;
+        private volatile Throwable error;
+        private boolean done = false;
+
+        TasksFuture(int size) {
+            this.result = new Object[size];
+            this.remaining = new AtomicInteger(size);
+        }
+
+        void setResult(int index, Object val) {
+            result[index] = val;
+        }
+
+        void setError(Throwable e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        void taskDone() {
+            if (remaining.decrementAndGet() == 0) {
+                synchronized (this) {
+                    done = true;
+                    notify();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<R> getResult() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+            if (error != null) {
+                throw MapperErrors.rethrow(error);
+            }
+            return (List<R>) Arrays.asList(result);
+        }
+    }
+
+    /**
+     * @param concurrency maximal number of elements mapped at the same time
+     */
+    public BoundedParallelMapper(int concurrency) {
+        permits = new Semaphore(max(1, concurrency));
+        executor = newExecutor();
+    }
+
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        if (args.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TasksFuture<R> tasksFuture = new TasksFuture<>(args.size());
+        for (int i = 0; i < args.size(); i++) {
+            final int index = i;
+            permits.acquire();
+            executor.execute(() -> {
+                try {
+                    tasksFuture.setResult(index, f.apply(args.get(index)));
+                } catch (Throwable e) {
+                    tasksFuture.setError(e);
+                } finally {
+                    permits.release();
+                    tasksFuture.taskDone();
+                }
+            });
+        }
+
+        return tasksFuture.getResult();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.ifmo.rain.shelepov.concurrent;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Rethrowing of failures recorded by worker threads in the thread calling {@code map}.
+ */
+final class MapperErrors {
+    private MapperErrors() {
+    }
+
+    /**
+     * Throws {@code e} if it is an {@link Error}, otherwise returns it as an unchecked exception
+     * for the caller to throw. Checked exceptions are wrapped in {@link CompletionException}.
+     */
+    static RuntimeException rethrow(Throwable e) {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return e instanceof RuntimeException ? (RuntimeException) e : new CompletionException(e);
+    }
+}
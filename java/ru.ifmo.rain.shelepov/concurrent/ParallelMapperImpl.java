@@ -1,46 +1,198 @@
 package ru.ifmo.rain.shelepov.concurrent;
 
-import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
-
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
-public class ParallelMapperImpl implements ParallelMapper {
+public class ParallelMapperImpl implements StreamingParallelMapper {
 
     private final List<Thread> threadPool;
     private final Queue<Runnable> queue;
     private static final int MAX_QUEUE_SIZE = 1000000;
+    // Chunks per worker, several let faster workers pick up the rest when elements differ in cost
+    private static final int CHUNKS_PER_THREAD = 4;
 
     private class TasksFuture<R> {
-        private List<R> result;
-        private int cnt = 0;
+        private final Object[] result;
+        private final AtomicInteger chunks;
+        private boolean done = false;
+        private volatile boolean cancelled = false;
+        private Throwable error;
+        // Set once the error is thrown to the caller, it is not changed after that
+        private boolean reported = false;
 
-        public TasksFuture(List<R> result) {
-            this.result = result;
+        public TasksFuture(int size, int chunks) {
+            this.result = new Object[size];
+            this.chunks = new AtomicInteger(chunks);
         }
 
         public void setResult(int index, R val) {
-            result.set(index, val);
-            synchronized (this) {
-                cnt++;
-                if (cnt == result.size()) {
+            result[index] = val;
+        }
+
+        // The first error completes the map, chunks still running see the cancellation and stop
+        public synchronized void setError(Throwable e) {
+            if (error == null) {
+                error = e;
+            } else if (error != e && !reported) {
+                error.addSuppressed(e);
+            }
+            cancelled = true;
+            done = true;
+            notify();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public void chunkDone() {
+            if (chunks.decrementAndGet() == 0) {
+                synchronized (this) {
+                    done = true;
                     notify();
                 }
             }
         }
 
-        public synchronized List<R> getResult() throws InterruptedException {
-            while (cnt < result.size()) {
+        @SuppressWarnings("unchecked")
+        public synchronized List<R> getResult(long timeout) throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + timeout;
+            while (!done) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    cancelled = true;
+                    throw new TimeoutException("Map didn't finish in " + timeout + " ns");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            if (error != null) {
+                reported = true;
+                throw MapperErrors.rethrow(error);
+            }
+
+            return new ArrayList<>((List<R>) Arrays.asList(result));
+        }
+
+    }
+
+    private static class Slot<R> {
+        private R value;
+        private Throwable error;
+        private boolean done = false;
+
+        public synchronized void set(R value, Throwable error) {
+            this.value = value;
+            this.error = error;
+            done = true;
+            notify();
+        }
+
+        public synchronized void await() throws InterruptedException {
+            while (!done) {
                 wait();
             }
+        }
+
+        public synchronized R get() throws InterruptedException {
+            await();
+            if (error != null) {
+                throw MapperErrors.rethrow(error);
+            }
+            return value;
+        }
+    }
+
+    private class ResultIterator<T, R> implements Iterator<R> {
+        private final Function<? super T, ? extends R> f;
+        private final Iterator<? extends T> args;
+        private final int inFlight;
+        private final boolean ordered;
+        private final Queue<Slot<R>> pending = new ArrayDeque<>();
+        private final BlockingQueue<Slot<R>> completed = new LinkedBlockingQueue<>();
+        private int outstanding = 0;
+        private volatile boolean cancelled = false;
 
-            return result;
+        public ResultIterator(Function<? super T, ? extends R> f, Iterator<? extends T> args, int inFlight, boolean ordered) {
+            this.f = f;
+            this.args = args;
+            this.inFlight = max(1, inFlight);
+            this.ordered = ordered;
         }
 
+        private void submit() throws InterruptedException {
+            while (outstanding < inFlight && !cancelled && args.hasNext()) {
+                T arg = args.next();
+                Slot<R> slot = new Slot<>();
+                if (ordered) {
+                    pending.add(slot);
+                }
+                addTask(() -> {
+                    try {
+                        if (cancelled) {
+                            throw new CancellationException("Map was cancelled");
+                        }
+                        slot.set(f.apply(arg), null);
+                    } catch (Throwable e) {
+                        slot.set(null, e);
+                    }
+                    if (!ordered) {
+                        completed.add(slot);
+                    }
+                });
+                outstanding++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return outstanding > 0 || !cancelled && args.hasNext();
+        }
+
+        @Override
+        public R next() {
+            try {
+                submit();
+                if (outstanding == 0) {
+                    throw new NoSuchElementException();
+                }
+                // The slot is removed only when its result is ready, so an interrupted wait loses nothing
+                Slot<R> slot;
+                if (ordered) {
+                    pending.element().await();
+                    slot = pending.remove();
+                } else {
+                    slot = completed.take();
+                }
+                outstanding--;
+                return slot.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a result", e);
+            }
+        }
+
+        // Submitted elements that haven't started are skipped, their results become CancellationException
+        void cancel() {
+            cancelled = true;
+        }
     }
 
+
     private void calculateTask() throws InterruptedException {
         Runnable task;
 
@@ -72,7 +224,11 @@ public class ParallelMapperImpl implements ParallelMapper {
         return new Thread(() -> {
             try {
                 while (!Thread.interrupted()) {
-                    calculateTask();
+                    try {
+                        calculateTask();
+                    } catch (RuntimeException e) {
+                        // Tasks report failures to their callers, the worker keeps serving the queue
+                    }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -94,13 +250,66 @@ public class ParallelMapperImpl implements ParallelMapper {
 
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
-        TasksFuture<R> tasksFuture = new TasksFuture<>(new ArrayList<>(Collections.nCopies(args.size(), null)));
-        for (int i = 0; i < args.size(); i++) {
-            final int index = i;
-            addTask(() -> tasksFuture.setResult(index, f.apply(args.get(index))));
+        try {
+            return map(f, args, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError("Map without deadline timed out", e);
         }
+    }
 
-        return tasksFuture.getResult();
+    /**
+     * Same as {@link #map(Function, List)}, but gives up after {@code timeout}. The first exception
+     * thrown by {@code f} is rethrown as soon as it happens, exceptions thrown before this thread
+     * wakes up are added to it as suppressed and later ones are dropped. Elements that haven't
+     * started by then or by the deadline are skipped.
+     *
+     * @throws TimeoutException if some elements weren't mapped in time
+     */
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        int chunks = min(args.size(), threadPool.size() * CHUNKS_PER_THREAD);
+        TasksFuture<R> tasksFuture = new TasksFuture<>(args.size(), chunks);
+        try {
+            int r = 0;
+            for (int i = 0; i < chunks; i++) {
+                final int from = r;
+                final int to = from + args.size() / chunks + (i < args.size() % chunks ? 1 : 0);
+                addTask(() -> {
+                    try {
+                        for (int index = from; index < to && !tasksFuture.isCancelled(); index++) {
+                            tasksFuture.setResult(index, f.apply(args.get(index)));
+                        }
+                    } catch (Throwable e) {
+                        tasksFuture.setError(e);
+                    }
+                    tasksFuture.chunkDone();
+                });
+                r = to;
+            }
+
+            return chunks == 0 ? new ArrayList<>() : tasksFuture.getResult(unit.toNanos(timeout));
+        } catch (InterruptedException e) {
+            tasksFuture.cancel();
+            throw e;
+        }
+    }
+
+    @Override
+    public <T, R> Iterator<R> mapIterator(Function<? super T, ? extends R> f, Iterator<? extends T> args,
+                                          int inFlight, boolean ordered) {
+        return new ResultIterator<>(f, args, inFlight, ordered);
+    }
+
+    /**
+     * Same as {@link StreamingParallelMapper#mapStream}, closing the stream skips submitted elements
+     * that haven't started yet.
+     */
+    @Override
+    public <T, R> Stream<R> mapStream(Function<? super T, ? extends R> f, Iterator<? extends T> args,
+                                      int inFlight, boolean ordered) {
+        ResultIterator<T, R> results = new ResultIterator<>(f, args, inFlight, ordered);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+                ordered ? Spliterator.ORDERED : 0), false).onClose(results::cancel);
     }
 
     @Override
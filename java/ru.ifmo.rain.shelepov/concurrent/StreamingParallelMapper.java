@@ -0,0 +1,37 @@
+package ru.ifmo.rain.shelepov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link ParallelMapper} that can also deliver results one by one as they are computed.
+ */
+public interface StreamingParallelMapper extends ParallelMapper {
+    /**
+     * Lazily maps {@code args}: elements are taken and submitted while results are consumed, at most
+     * {@code inFlight} of them are submitted but not yet returned. An exception thrown by {@code f}
+     * is rethrown by {@link Iterator#next()} for the corresponding element. Elements submitted for an
+     * iterator that is abandoned before the end are still mapped, there are at most {@code inFlight}.
+     *
+     * @param ordered whether results come in the order of {@code args} or in the order of completion
+     */
+    <T, R> Iterator<R> mapIterator(Function<? super T, ? extends R> f, Iterator<? extends T> args,
+                                   int inFlight, boolean ordered);
+
+    /**
+     * Same as {@link #mapIterator} wrapped into a sequential stream. Implementations may skip
+     * submitted elements that haven't started when the stream is closed, the default one doesn't.
+     */
+    default <T, R> Stream<R> mapStream(Function<? super T, ? extends R> f, Iterator<? extends T> args,
+                                       int inFlight, boolean ordered) {
+        Iterator<R> results = mapIterator(f, args, inFlight, ordered);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+                ordered ? Spliterator.ORDERED : 0), false);
+    }
+}
@@ -0,0 +1,178 @@
+package ru.ifmo.rain.shelepov.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static java.lang.Math.max;
+
+/**
+ * {@link ParallelMapper} where every worker owns a lock-free deque. {@link #map} splits the
+ * arguments into one contiguous batch per worker and appends each batch with a single deque
+ * operation. Workers take tasks from the head of their own deque and steal from the tail of
+ * others, only parked workers are woken up.
+ */
+public class WorkStealingParallelMapper implements ParallelMapper {
+
+    private final Worker[] workers;
+    private volatile boolean closed;
+
+    private class Worker extends Thread {
+        private final Deque<Runnable> deque = new ConcurrentLinkedDeque<>();
+        private volatile boolean idle;
+
+        @Override
+        public void run() {
+            while (!closed && !isInterrupted()) {
+                Runnable task = deque.pollFirst();
+                if (task == null) {
+                    task = steal();
+                }
+                if (task != null) {
+                    execute(task);
+                    continue;
+                }
+                // Work added after the flag is set will either be found here or wake us up
+                idle = true;
+                task = steal();
+                if (task != null) {
+                    idle = false;
+                    execute(task);
+                } else {
+                    LockSupport.park(this);
+                    idle = false;
+                }
+            }
+        }
+
+        // Tasks report their own failures, anything escaping them must not stop the worker
+        private void execute(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                getUncaughtExceptionHandler().uncaughtException(this, e);
+            }
+        }
+
+        private Runnable steal() {
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                Runnable task = victim == this ? deque.pollFirst() : victim.deque.pollLast();
+                if (task != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class TasksFuture<R> {
+        private final Object[] results;
+        private final AtomicInteger remaining;
+        private volatile Throwable error;
+        private boolean done;
+
+        TasksFuture(int size) {
+            results = new Object[size];
+            remaining = new AtomicInteger(size);
+        }
+
+        void setResult(int index, Object value) {
+            results[index] = value;
+            complete();
+        }
+
+        void setError(Throwable e) {
+            if (error == null) {
+                error = e;
+            }
+            complete();
+        }
+
+        private void complete() {
+            if (remaining.decrementAndGet() == 0) {
+                synchronized (this) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<R> getResult() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+            if (error != null) {
+                throw MapperErrors.rethrow(error);
+            }
+            return (List<R>) Arrays.asList(results);
+        }
+    }
+
+    public WorkStealingParallelMapper(int threads) {
+        workers = new Worker[max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Mapper is closed");
+        }
+        if (args.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TasksFuture<R> future = new TasksFuture<>(args.size());
+        int batches = Math.min(workers.length, args.size());
+        int from = 0;
+        for (int i = 0; i < batches; i++) {
+            int to = from + args.size() / batches + (i < args.size() % batches ? 1 : 0);
+            List<Runnable> batch = new ArrayList<>(to - from);
+            for (int index = from; index < to; index++) {
+                final int element = index;
+                batch.add(() -> {
+                    try {
+                        future.setResult(element, f.apply(args.get(element)));
+                    } catch (Throwable e) {
+                        future.setError(e);
+                    }
+                });
+            }
+            workers[i].deque.addAll(batch);
+            from = to;
+        }
+        for (Worker worker : workers) {
+            if (worker.idle) {
+                LockSupport.unpark(worker);
+            }
+        }
+        return future.getResult();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            worker.interrupt();
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ignored) {
+
+            }
+        }
+    }
+}
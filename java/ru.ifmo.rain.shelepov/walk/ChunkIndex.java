@@ -0,0 +1,134 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of chunks and files seen during the walk, shared by all walker threads.
+ * <p>
+ * Chunks are identified by their 64-bit xxHash, files by the hash of their chunk
+ * digests and size. Files with equal identities are reported as duplicates, the dedup ratio
+ * is the number of walked bytes over the number of bytes in distinct chunks.
+ */
+public class ChunkIndex {
+    private final ConcurrentHashMap<Long, Integer> chunks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<FileKey, Queue<Path>> files = new ConcurrentHashMap<>();
+    private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+    private final LongAdder chunkCount = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder uniqueBytes = new LongAdder();
+    private final LongAdder fileCount = new LongAdder();
+
+    private static class FileKey {
+        private final long hash;
+        private final long size;
+
+        FileKey(long hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileKey && ((FileKey) o).hash == hash && ((FileKey) o).size == size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, size);
+        }
+    }
+
+    Chunker newChunker() {
+        return new Chunker(this);
+    }
+
+    /**
+     * Returns identity of the file if it is seen for the first time or {@code null} otherwise.
+     * Files are identified by the file key of the link target or, where there are no file keys,
+     * by the real path.
+     */
+    Object visit(Path file, BasicFileAttributes attrs) {
+        Object key;
+        try {
+            if (attrs == null || attrs.isSymbolicLink()) {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            }
+            key = attrs.fileKey();
+            if (key == null) {
+                key = file.toRealPath();
+            }
+        } catch (IOException e) {
+            key = file.toAbsolutePath().normalize();
+        }
+        return visited.add(key) ? key : null;
+    }
+
+    /**
+     * Makes the file with the identity returned by {@link #visit} unseen again.
+     */
+    void forget(Object key) {
+        visited.remove(key);
+    }
+
+    void addChunk(long hash, int length) {
+        chunkCount.increment();
+        totalBytes.add(length);
+        if (chunks.putIfAbsent(hash, length) == null) {
+            uniqueBytes.add(length);
+        }
+    }
+
+    void addFile(Path file, long hash, long size) {
+        fileCount.increment();
+        if (size > 0) {
+            files.computeIfAbsent(new FileKey(hash, size), key -> new ConcurrentLinkedQueue<>()).add(file);
+        }
+    }
+
+    /**
+     * Writes groups of identical non-empty files followed by the totals.
+     */
+    public void report(Writer out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(out);
+        List<List<String>> groups = new ArrayList<>();
+        for (Collection<Path> paths : files.values()) {
+            if (paths.size() > 1) {
+                List<String> group = new ArrayList<>();
+                paths.forEach(path -> group.add(path.toString()));
+                group.sort(Comparator.naturalOrder());
+                groups.add(group);
+            }
+        }
+        groups.sort(Comparator.comparing(group -> group.get(0)));
+
+        for (List<String> group : groups) {
+            writer.write("duplicates:");
+            writer.newLine();
+            for (String path : group) {
+                writer.write("    " + path);
+                writer.newLine();
+            }
+        }
+        long total = totalBytes.sum();
+        long unique = uniqueBytes.sum();
+        writer.write(String.format("files %d, chunks %d, unique chunks %d, bytes %d, unique bytes %d, dedup ratio %.3f",
+                fileCount.sum(), chunkCount.sum(), chunks.size(), total, unique, unique == 0 ? 1.0 : (double) total / unique));
+        writer.newLine();
+        writer.flush();
+    }
+}
@@ -0,0 +1,127 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Splits file contents into content-defined chunks with a gear rolling hash and feeds their
+ * digests to a {@link ChunkIndex} once the whole file is read. Boundaries depend only on the
+ * nearby bytes, so an insertion shifts just the chunks around it. Instances are not thread-safe,
+ * one is owned by a {@link FileHasher}.
+ */
+class Chunker {
+    private static final int MIN_SIZE = 2 << 10;
+    private static final int MAX_SIZE = 64 << 10;
+    // Boundary on 13 zero bits gives chunks of about 8K on top of the minimal size
+    private static final long MASK = (1L << 13) - 1 << 51;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5eedL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final ChunkIndex index;
+    private final HashFunction chunkHash = new XxHash64();
+    private final HashFunction fileHash = new XxHash64();
+    private final byte[] digest = new byte[Long.BYTES];
+    private final ByteBuffer digestBuffer = ByteBuffer.wrap(digest);
+    private long rolling;
+    private int chunkLength;
+    private long size;
+    // Chunks of the current file and its identity in the index, the chunks are added by finish
+    private long[] hashes = new long[16];
+    private int[] lengths = new int[16];
+    private int chunks;
+    private Object key;
+
+    Chunker(ChunkIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Starts chunking of the file unless it was already chunked under this or another path.
+     */
+    boolean start(Path file, BasicFileAttributes attrs) {
+        key = index.visit(file, attrs);
+        if (key == null) {
+            return false;
+        }
+        chunkHash.reset();
+        fileHash.reset();
+        rolling = 0;
+        chunkLength = 0;
+        size = 0;
+        chunks = 0;
+        return true;
+    }
+
+    /**
+     * Consumes bytes between position and limit of {@code data}, leaving both unchanged.
+     */
+    void update(ByteBuffer data) {
+        ByteBuffer chunk = data.duplicate();
+        int start = data.position();
+        int limit = data.limit();
+        long h = rolling;
+        int length = chunkLength;
+        for (int i = start; i < limit; i++) {
+            h = (h << 1) + GEAR[data.get(i) & 255];
+            length++;
+            if (length >= MAX_SIZE || length >= MIN_SIZE && (h & MASK) == 0) {
+                chunk.limit(i + 1).position(start);
+                chunkHash.update(chunk);
+                endChunk(length);
+                start = i + 1;
+                h = 0;
+                length = 0;
+            }
+        }
+        chunk.limit(limit).position(start);
+        chunkHash.update(chunk);
+        rolling = h;
+        chunkLength = length;
+        size += limit - data.position();
+    }
+
+    /**
+     * Registers the file read since the last {@link #start}.
+     */
+    void finish(Path file) {
+        if (chunkLength > 0) {
+            endChunk(chunkLength);
+        }
+        for (int i = 0; i < chunks; i++) {
+            index.addChunk(hashes[i], lengths[i]);
+        }
+        fileHash.digest(digest);
+        index.addFile(file, digestBuffer.getLong(0), size);
+        key = null;
+    }
+
+    /**
+     * Drops the file started by the last {@link #start}, so it can be chunked under another path.
+     */
+    void abort() {
+        index.forget(key);
+        key = null;
+    }
+
+    private void endChunk(int length) {
+        chunkHash.digest(digest);
+        chunkHash.reset();
+        if (chunks == hashes.length) {
+            hashes = Arrays.copyOf(hashes, 2 * chunks);
+            lengths = Arrays.copyOf(lengths, 2 * chunks);
+        }
+        hashes[chunks] = digestBuffer.getLong(0);
+        lengths[chunks++] = length;
+        digestBuffer.clear();
+        fileHash.update(digestBuffer);
+    }
+}
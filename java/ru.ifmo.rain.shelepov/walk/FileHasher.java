@@ -0,0 +1,163 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Reads files through a {@link FileChannel} into one reused direct buffer and maps large files
+ * instead of copying them. Instances are not thread-safe, every walker thread owns its own.
+ */
+public class FileHasher {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MAP_THRESHOLD = 64L << 20;
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final HashFunction function;
+    private final byte[] digest;
+    private final HashCache cache;
+    private final Chunker chunker;
+    // Whether the file being hashed is also chunked, files seen before are not
+    private boolean chunking;
+    private final WalkMetrics metrics;
+    private final TreeHash tree;
+
+    public FileHasher(HashFunction function) {
+        this(function, null);
+    }
+
+    public FileHasher(HashFunction function, HashCache cache) {
+        this(function, cache, null);
+    }
+
+    /**
+     * @param chunks index that gets chunks of every hashed file, cached digests are not used with it
+     */
+    public FileHasher(HashFunction function, HashCache cache, ChunkIndex chunks) {
+        this(function, cache, chunks, null);
+    }
+
+    /**
+     * @param metrics counters of hashed files and failures or {@code null}
+     */
+    public FileHasher(HashFunction function, HashCache cache, ChunkIndex chunks, WalkMetrics metrics) {
+        this(function, cache, chunks, metrics, null);
+    }
+
+    /**
+     * @param tree tree hash computing digests instead of {@code function} or {@code null},
+     *             can't be used together with {@code chunks}
+     */
+    public FileHasher(HashFunction function, HashCache cache, ChunkIndex chunks, WalkMetrics metrics, TreeHash tree) {
+        this.function = function;
+        this.digest = new byte[function.length()];
+        this.cache = cache;
+        this.chunker = chunks == null ? null : chunks.newChunker();
+        this.metrics = metrics;
+        this.tree = tree;
+    }
+
+    public int length() {
+        return digest.length;
+    }
+
+    /**
+     * Returns digest of the file or zeros if it couldn't be read. The array is reused by the next call.
+     */
+    public byte[] hash(Path file) {
+        return hash(file, null);
+    }
+
+    /**
+     * Same as {@link #hash(Path)}, but regular files with known attributes go through the cache.
+     */
+    public byte[] hash(Path file, BasicFileAttributes attrs) {
+        boolean cached = cache != null && attrs != null && attrs.isRegularFile();
+        if (cached && chunker == null && cache.lookup(file, attrs, digest)) {
+            if (metrics != null) {
+                metrics.cachedFile();
+            }
+            return digest;
+        }
+        long start = System.nanoTime();
+        long size = compute(file, attrs);
+        if (metrics != null) {
+            if (size < 0) {
+                metrics.error();
+            } else {
+                metrics.file(file, size, System.nanoTime() - start);
+            }
+        }
+        if (size >= 0 && cached) {
+            cache.store(file, attrs, digest);
+        }
+        return digest;
+    }
+
+    // Returns size of the hashed file or -1 if it couldn't be read
+    private long compute(Path file, BasicFileAttributes attrs) {
+        function.reset();
+        chunking = chunker != null && chunker.start(file, attrs);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (tree != null) {
+                tree.hash(channel, size, digest);
+                return size;
+            }
+            if (size >= MAP_THRESHOLD) {
+                hashMapped(channel, size);
+            } else {
+                hashRead(channel, size);
+            }
+            function.digest(digest);
+            if (chunking) {
+                chunking = false;
+                chunker.finish(file);
+            }
+            return size;
+        } catch (IOException e) {
+            Arrays.fill(digest, (byte) 0);
+            return -1;
+        } finally {
+            if (chunking) {
+                // The file wasn't read to the end, none of its chunks are counted
+                chunking = false;
+                chunker.abort();
+            }
+        }
+    }
+
+    // Files that fit into the buffer are read with a single call, the size check saves the one hitting EOF
+    private void hashRead(FileChannel channel, long size) throws IOException {
+        long total = 0;
+        int read;
+        buffer.clear();
+        while ((read = channel.read(buffer)) >= 0) {
+            buffer.flip();
+            update(buffer);
+            buffer.clear();
+            total += read;
+            if (size > 0 && total >= size) {
+                break;
+            }
+        }
+    }
+
+    private void hashMapped(FileChannel channel, long size) throws IOException {
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+        }
+    }
+
+    private void update(ByteBuffer data) {
+        function.update(data);
+        if (chunking) {
+            chunker.update(data);
+        }
+    }
+}
@@ -1,46 +1,84 @@
 package ru.ifmo.rain.shelepov.walk;
 
-import java.io.*;
-import java.nio.charset.Charset;
+import java.io.IOException;
 import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
 
 import static java.nio.file.FileVisitResult.CONTINUE;
 
 public class FileVisitor extends SimpleFileVisitor<Path> {
 
-    private final static int BUFFER_SIZE = 4096;
-    private final static int FNV_PRIME = 0x01000193;
-    private final static int INITIAL = 0x811c9dc5;
-    private Writer writer;
+    private final RecordWriter writer;
+    private final FileHasher hasher;
+    private final Consumer<Path> directories;
+    private final WalkMetrics metrics;
+    private final Deque<Directory> open = new ArrayDeque<>();
 
-    public FileVisitor(Writer writer) {
+    // Time spent in files and subdirectories is excluded, the rest is listing the directory
+    private static class Directory {
+        private final Path dir;
+        private final long start = System.nanoTime();
+        private long excluded;
+
+        Directory(Path dir) {
+            this.dir = dir;
+        }
+    }
+
+    public FileVisitor(RecordWriter writer, FileHasher hasher) {
+        this(writer, hasher, dir -> {});
+    }
+
+    public FileVisitor(RecordWriter writer, FileHasher hasher, Consumer<Path> directories) {
+        this(writer, hasher, directories, null);
+    }
+
+    public FileVisitor(RecordWriter writer, FileHasher hasher, Consumer<Path> directories, WalkMetrics metrics) {
         this.writer = writer;
+        this.hasher = hasher;
+        this.directories = directories;
+        this.metrics = metrics;
     }
 
-    private int getFNVHash(Path file) {
-        try (InputStream reader = Files.newInputStream(file)) {
-            int hash = INITIAL;
-            byte[] buf = new byte[BUFFER_SIZE];
-            int len = 0;
-            while ((len = reader.read(buf)) > 0) {
-                for (int i = 0; i < len; i++) {
-                    hash = (hash * FNV_PRIME) ^ (buf[i] & 255);
-                }
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        directories.accept(dir);
+        if (metrics != null) {
+            // Directories left open by a failed walk
+            while (!open.isEmpty() && !dir.startsWith(open.peek().dir)) {
+                open.pop();
             }
-            return hash;
-        } catch (IOException e) {
-            return 0;
+            open.push(new Directory(dir));
         }
+        return CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attr) throws IOException {
-        writer.write(String.format("%08x", getFNVHash(file)) + " " + file + '\n');
+        long start = metrics == null || open.isEmpty() ? 0 : System.nanoTime();
+        writer.write(hasher.hash(file, attr), file);
+        if (start != 0) {
+            open.peek().excluded += System.nanoTime() - start;
+        }
         return CONTINUE;
     }
 
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (metrics != null && !open.isEmpty()) {
+            Directory directory = open.pop();
+            long elapsed = System.nanoTime() - directory.start;
+            metrics.directory(elapsed - directory.excluded);
+            if (!open.isEmpty()) {
+                open.peek().excluded += elapsed;
+            }
+        }
+        return super.postVisitDirectory(dir, exc);
+    }
+
 }
@@ -0,0 +1,52 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 32-bit FNV-1 (multiply, then xor), consuming input in 8-byte blocks.
+ */
+public class FnvHash implements HashFunction {
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int INITIAL = 0x811c9dc5;
+
+    private int hash = INITIAL;
+
+    @Override
+    public int length() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public void reset() {
+        hash = INITIAL;
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        ByteBuffer bytes = data.order() == ByteOrder.BIG_ENDIAN ? data : data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int h = hash;
+        int i = bytes.position();
+        int limit = bytes.limit();
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long block = bytes.getLong(i);
+            h = (h * FNV_PRIME) ^ (int) (block >>> 56);
+            h = (h * FNV_PRIME) ^ (int) (block >>> 48) & 255;
+            h = (h * FNV_PRIME) ^ (int) (block >>> 40) & 255;
+            h = (h * FNV_PRIME) ^ (int) (block >>> 32) & 255;
+            h = (h * FNV_PRIME) ^ (int) (block >>> 24) & 255;
+            h = (h * FNV_PRIME) ^ (int) (block >>> 16) & 255;
+            h = (h * FNV_PRIME) ^ (int) (block >>> 8) & 255;
+            h = (h * FNV_PRIME) ^ (int) block & 255;
+        }
+        for (; i < limit; i++) {
+            h = (h * FNV_PRIME) ^ (bytes.get(i) & 255);
+        }
+        hash = h;
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        HashFunctions.putInt(out, hash);
+    }
+}
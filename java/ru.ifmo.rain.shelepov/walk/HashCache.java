@@ -0,0 +1,249 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent map from absolute path, size, modification time and file key to the file digest.
+ * <p>
+ * The file is a header followed by entries sorted by path bytes. It is memory-mapped on open and
+ * only entry offsets are read into memory, lookups binary search the mapped entries. Entries of
+ * files seen during the walk are written back by {@link #save()}; entries of files that were not
+ * visited are dropped.
+ */
+public class HashCache {
+    private static final int MAGIC = 0x57484331;
+    private static final int EMPTY_KEY = -1;
+
+    private final Path file;
+    private final String hashName;
+    private final int digestLength;
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final Queue<Entry> visited = new ConcurrentLinkedQueue<>();
+
+    private static class Entry {
+        private final byte[] path;
+        private final long size;
+        private final long modified;
+        private final byte[] key;
+        private final byte[] digest;
+
+        Entry(byte[] path, long size, long modified, byte[] key, byte[] digest) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.key = key;
+            this.digest = digest;
+        }
+    }
+
+    private HashCache(Path file, String hashName, int digestLength, ByteBuffer data, int[] offsets) {
+        this.file = file;
+        this.hashName = hashName;
+        this.digestLength = digestLength;
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Opens the cache, a missing file or a file written for another hash function gives an empty cache.
+     */
+    public static HashCache open(Path file, String hashName, int digestLength) throws IOException {
+        HashCache empty = new HashCache(file, hashName, digestLength, ByteBuffer.allocate(0), new int[0]);
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return empty;
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return empty;
+        }
+
+        try {
+            if (data.getInt() != MAGIC) {
+                return empty;
+            }
+            byte[] name = new byte[data.getShort()];
+            data.get(name);
+            if (!hashName.equals(new String(name, StandardCharsets.UTF_8)) || data.getInt() != digestLength) {
+                return empty;
+            }
+            int count = data.getInt();
+            // Every entry has a path and key length, size, modification time and digest
+            if (count < 0 || count > data.remaining() / (2 * Integer.BYTES + 2 * Long.BYTES + digestLength)) {
+                return empty;
+            }
+            int[] offsets = new int[count];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = data.position();
+                int pathLength = data.getInt();
+                data.position(data.position() + pathLength + 2 * Long.BYTES);
+                int keyLength = data.getInt();
+                data.position(data.position() + Math.max(keyLength, 0) + digestLength);
+            }
+            return new HashCache(file, hashName, digestLength, data, offsets);
+        } catch (RuntimeException e) {
+            // Truncated or otherwise corrupted cache is rebuilt from scratch
+            return empty;
+        }
+    }
+
+    private static byte[] pathBytes(Path file) {
+        return file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] keyBytes(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? null : key.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long modified(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private int comparePath(int offset, byte[] path) {
+        int length = data.getInt(offset);
+        int common = Math.min(length, path.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(data.get(offset + Integer.BYTES + i) & 255, path[i] & 255);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, path.length);
+    }
+
+    private int find(byte[] path) {
+        int l = 0;
+        int r = offsets.length - 1;
+        while (l <= r) {
+            int m = (l + r) >>> 1;
+            int cmp = comparePath(offsets[m], path);
+            if (cmp < 0) {
+                l = m + 1;
+            } else if (cmp > 0) {
+                r = m - 1;
+            } else {
+                return offsets[m];
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int position, long size, long modified, byte[] key) {
+        if (data.getLong(position) != size || data.getLong(position + Long.BYTES) != modified) {
+            return false;
+        }
+        position += 2 * Long.BYTES;
+        int keyLength = data.getInt(position);
+        if (key == null || keyLength == EMPTY_KEY) {
+            return key == null && keyLength == EMPTY_KEY;
+        }
+        if (keyLength != key.length) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (data.get(position + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the cached digest of an unchanged file to {@code digest}.
+     *
+     * @return {@code false} if the file is unknown or has changed
+     */
+    public boolean lookup(Path file, BasicFileAttributes attrs, byte[] digest) {
+        byte[] path = pathBytes(file);
+        int offset = find(path);
+        if (offset < 0) {
+            return false;
+        }
+        int position = offset + Integer.BYTES + path.length;
+        byte[] key = keyBytes(attrs);
+        if (!matches(position, attrs.size(), modified(attrs), key)) {
+            return false;
+        }
+        position += 2 * Long.BYTES + Integer.BYTES + (key == null ? 0 : key.length);
+        data.get(position, digest, 0, digestLength);
+        visited.add(new Entry(path, attrs.size(), modified(attrs), key, digest.clone()));
+        return true;
+    }
+
+    public void store(Path file, BasicFileAttributes attrs, byte[] digest) {
+        visited.add(new Entry(pathBytes(file), attrs.size(), modified(attrs), keyBytes(attrs), digest.clone()));
+    }
+
+    /**
+     * Atomically replaces the cache file with entries of visited files.
+     */
+    public void save() throws IOException {
+        List<Entry> entries = new ArrayList<>(visited);
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.path, b.path));
+
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                byte[] name = hashName.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(digestLength);
+
+                int unique = 0;
+                for (int i = 0; i < entries.size(); i++) {
+                    if (i == 0 || !Arrays.equals(entries.get(i - 1).path, entries.get(i).path)) {
+                        unique++;
+                    }
+                }
+                out.writeInt(unique);
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    if (i > 0 && Arrays.equals(entries.get(i - 1).path, entry.path)) {
+                        continue;
+                    }
+                    out.writeInt(entry.path.length);
+                    out.write(entry.path);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    if (entry.key == null) {
+                        out.writeInt(EMPTY_KEY);
+                    } else {
+                        out.writeInt(entry.key.length);
+                        out.write(entry.key);
+                    }
+                    out.write(entry.digest);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash of file contents. Instances keep state and are used by one thread at a time.
+ */
+public interface HashFunction {
+    /**
+     * Digest length in bytes.
+     */
+    int length();
+
+    void reset();
+
+    /**
+     * Consumes bytes between position and limit of {@code data}, leaving both unchanged.
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * Writes {@link #length()} bytes of the digest, most significant first.
+     */
+    void digest(byte[] out);
+
+    /**
+     * Service provider interface, factories are found by {@link HashFunctions#factory(String)}
+     * among built-in ones and ones registered for {@link java.util.ServiceLoader}.
+     */
+    interface Factory {
+        String name();
+
+        HashFunction create();
+    }
+}
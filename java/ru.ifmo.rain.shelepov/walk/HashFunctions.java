@@ -0,0 +1,118 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+public final class HashFunctions {
+    public static final String DEFAULT = "fnv";
+
+    private static final Map<String, Supplier<HashFunction>> BUILT_IN = new LinkedHashMap<>();
+
+    static {
+        BUILT_IN.put(DEFAULT, FnvHash::new);
+        BUILT_IN.put("xxh64", XxHash64::new);
+        BUILT_IN.put("crc32c", Crc32c::new);
+        BUILT_IN.put("sha256", () -> new Digest("SHA-256"));
+    }
+
+    private HashFunctions() {
+    }
+
+    public static HashFunction.Factory factory(final String name) throws WalkException {
+        Supplier<HashFunction> builtIn = BUILT_IN.get(name);
+        if (builtIn != null) {
+            return new HashFunction.Factory() {
+                @Override
+                public String name() {
+                    return name;
+                }
+
+                @Override
+                public HashFunction create() {
+                    return builtIn.get();
+                }
+            };
+        }
+        for (HashFunction.Factory factory : ServiceLoader.load(HashFunction.Factory.class)) {
+            if (factory.name().equals(name)) {
+                return factory;
+            }
+        }
+        throw new WalkException("Unknown hash function " + name + ", built-in ones are " + BUILT_IN.keySet());
+    }
+
+    static void putInt(byte[] out, int value) {
+        for (int i = Integer.BYTES - 1; i >= 0; i--) {
+            out[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    static void putLong(byte[] out, long value) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            out[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static class Crc32c implements HashFunction {
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        public int length() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void reset() {
+            crc.reset();
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            crc.update(data.duplicate());
+        }
+
+        @Override
+        public void digest(byte[] out) {
+            putInt(out, (int) crc.getValue());
+        }
+    }
+
+    private static class Digest implements HashFunction {
+        private final MessageDigest digest;
+
+        Digest(String algorithm) {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Missing standard algorithm " + algorithm, e);
+            }
+        }
+
+        @Override
+        public int length() {
+            return digest.getDigestLength();
+        }
+
+        @Override
+        public void reset() {
+            digest.reset();
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            digest.update(data.duplicate());
+        }
+
+        @Override
+        public void digest(byte[] out) {
+            byte[] result = digest.digest();
+            System.arraycopy(result, 0, out, 0, result.length);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Walks input roots on a work-stealing pool. Every directory is split into a task per entry,
+ * results are joined in directory order and roots are written in input order, so the output
+ * is the same as the one of the sequential {@link FileVisitor} walk.
+ */
+public class ParallelWalk implements AutoCloseable {
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int window;
+    private final ThreadLocal<FileHasher> hasher;
+    private final byte[] failedDigest;
+    private final Consumer<Path> directories;
+    private final WalkMetrics metrics;
+
+    public ParallelWalk(int threads, HashFunction.Factory hash, HashCache cache) {
+        this(threads, hash, cache, dir -> {});
+    }
+
+    /**
+     * @param directories called from pool threads for every visited directory
+     */
+    public ParallelWalk(int threads, HashFunction.Factory hash, HashCache cache, Consumer<Path> directories) {
+        this(threads, () -> new FileHasher(hash.create(), cache), hash.create().length(), directories, null);
+    }
+
+    /**
+     * @param hashers      creates the hasher of every pool thread
+     * @param digestLength length of digests made by {@code hashers}
+     * @param metrics      counters of listed directories and failed roots or {@code null}
+     */
+    public ParallelWalk(int threads, Supplier<FileHasher> hashers, int digestLength, Consumer<Path> directories,
+                        WalkMetrics metrics) {
+        this.directories = directories;
+        this.metrics = metrics;
+        pool = new ForkJoinPool(threads);
+        window = threads * WINDOW_PER_THREAD;
+        hasher = ThreadLocal.withInitial(hashers);
+        failedDigest = new byte[digestLength];
+    }
+
+    private static class Record {
+        private final byte[] digest;
+        private final Object file;
+
+        Record(byte[] digest, Object file) {
+            this.digest = digest;
+            this.file = file;
+        }
+    }
+
+    private static class Result {
+        private final List<Record> records;
+        private final boolean failed;
+
+        Result(List<Record> records, boolean failed) {
+            this.records = records;
+            this.failed = failed;
+        }
+    }
+
+    private static final Result FAILED = new Result(Collections.emptyList(), true);
+
+    private class EntryTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+
+        EntryTask(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        protected Result compute() {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                return FAILED;
+            }
+            if (!attrs.isDirectory()) {
+                try {
+                    return new Result(List.of(new Record(hasher.get().hash(path, attrs).clone(), path)), false);
+                } catch (RuntimeException e) {
+                    // Fails the root here, so records of the entries before this one are kept
+                    return FAILED;
+                }
+            }
+            directories.accept(path);
+
+            List<EntryTask> children = new ArrayList<>();
+            long start = System.nanoTime();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path entry : entries) {
+                    children.add(new EntryTask(entry));
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                return FAILED;
+            }
+            if (metrics != null) {
+                metrics.directory(System.nanoTime() - start);
+            }
+            invokeAll(children);
+
+            List<Record> records = new ArrayList<>();
+            for (EntryTask child : children) {
+                Result result = child.join();
+                records.addAll(result.records);
+                if (result.failed) {
+                    return new Result(records, true);
+                }
+            }
+            return new Result(records, false);
+        }
+    }
+
+    private class RootTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final String root;
+
+        RootTask(String root) {
+            this.root = root;
+        }
+
+        @Override
+        protected Result compute() {
+            Result result;
+            try {
+                result = new EntryTask(Paths.get(root)).compute();
+            } catch (RuntimeException e) {
+                result = FAILED;
+            }
+            if (!result.failed) {
+                return result;
+            }
+            if (metrics != null) {
+                metrics.error();
+            }
+            List<Record> records = new ArrayList<>(result.records);
+            records.add(new Record(failedDigest, root));
+            return new Result(records, true);
+        }
+    }
+
+    public void walk(BufferedReader reader, RecordWriter writer) throws IOException {
+        Queue<ForkJoinTask<Result>> pending = new ArrayDeque<>();
+        String root;
+        while ((root = reader.readLine()) != null) {
+            if (pending.size() >= window) {
+                write(pending.poll(), writer);
+            }
+            pending.add(pool.submit(new RootTask(root)));
+        }
+        while (!pending.isEmpty()) {
+            write(pending.poll(), writer);
+        }
+    }
+
+    private static void write(ForkJoinTask<Result> task, RecordWriter writer) throws IOException {
+        for (Record record : task.join().records) {
+            writer.write(record.digest, record.file);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
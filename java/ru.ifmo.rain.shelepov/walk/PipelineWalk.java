@@ -0,0 +1,248 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.nio.file.FileVisitResult.CONTINUE;
+
+/**
+ * Walk as a pipeline of stages connected by bounded queues: a reader of input roots, a single
+ * traversal thread, a pool of hashing threads and the calling thread writing records in
+ * traversal order. Every stage blocks when the next one lags behind, so memory does not
+ * depend on the number of roots or on the size of a tree. Output is the same as the one of
+ * the sequential walk: a file that fails to hash fails its whole root, which gets a single
+ * record after the records written before the failure.
+ */
+public class PipelineWalk implements AutoCloseable {
+    private static final Job END = new Job(null, null, null);
+
+    private final int hashThreads;
+    private final BlockingQueue<Job> roots;
+    private final BlockingQueue<Job> hashQueue;
+    private final BlockingQueue<Job> writeQueue;
+    private final ExecutorService executor;
+    private final Supplier<FileHasher> hashers;
+    private final byte[] failedDigest;
+    private final Consumer<Path> directories;
+    private final WalkMetrics metrics;
+    // First error of a traversal or hashing thread, the writer stops the walk when it is set
+    private volatile Throwable failure;
+
+    // Root read from the input or file found by the traversal
+    private static class Job {
+        private final Object file;
+        private final BasicFileAttributes attrs;
+        // Root the file was found in, null for roots themselves
+        private final Job root;
+        private byte[] digest;
+        private boolean failed;
+
+        Job(Object file, BasicFileAttributes attrs, Job root) {
+            this.file = file;
+            this.attrs = attrs;
+            this.root = root;
+        }
+
+        synchronized void complete(byte[] digest) {
+            this.digest = digest;
+            notifyAll();
+        }
+
+        synchronized void fail(byte[] digest) {
+            failed = true;
+            complete(digest);
+        }
+
+        synchronized boolean isFailed() {
+            return failed;
+        }
+
+        synchronized byte[] await() throws InterruptedException {
+            while (digest == null) {
+                wait();
+            }
+            return digest;
+        }
+    }
+
+    /**
+     * @param rootDepth    capacity of the queue of roots read but not yet walked
+     * @param hashDepth    capacity of the queue of files found but not yet hashed
+     * @param writeDepth   capacity of the queue of files found but not yet written, bounds all in-flight files
+     * @param digestLength length of digests made by {@code hashers}
+     */
+    public PipelineWalk(int hashThreads, int rootDepth, int hashDepth, int writeDepth, Supplier<FileHasher> hashers,
+                        int digestLength, Consumer<Path> directories, WalkMetrics metrics) {
+        this.hashThreads = hashThreads;
+        this.roots = new ArrayBlockingQueue<>(rootDepth);
+        this.hashQueue = new ArrayBlockingQueue<>(hashDepth);
+        this.writeQueue = new ArrayBlockingQueue<>(writeDepth);
+        this.executor = Executors.newFixedThreadPool(hashThreads + 2);
+        this.hashers = hashers;
+        this.directories = directories;
+        this.metrics = metrics;
+        this.failedDigest = new byte[digestLength];
+    }
+
+    public void walk(BufferedReader reader, RecordWriter writer) throws IOException {
+        Future<?> reading = executor.submit(() -> {
+            try {
+                read(reader);
+            } finally {
+                roots.put(END);
+            }
+            return null;
+        });
+        executor.submit(this::traverse);
+        for (int i = 0; i < hashThreads; i++) {
+            executor.submit(this::hash);
+        }
+
+        try {
+            // Root with a failed file, the rest of its records is skipped as in the sequential walk
+            Job skipped = null;
+            for (Job job = writeQueue.take(); job != END; job = writeQueue.take()) {
+                byte[] digest = job.await();
+                checkFailure();
+                Job root = job.root == null ? job : job.root;
+                if (root == skipped) {
+                    continue;
+                }
+                if (job.isFailed()) {
+                    skipped = root;
+                    if (metrics != null) {
+                        metrics.error();
+                    }
+                    writer.write(failedDigest, root.file);
+                } else {
+                    writer.write(digest, job.file);
+                }
+            }
+            checkFailure();
+            reading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Walk interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Walk failed: " + failure, failure);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private void read(BufferedReader reader) throws IOException, InterruptedException {
+        String root;
+        while ((root = reader.readLine()) != null) {
+            roots.put(new Job(root, null, null));
+        }
+    }
+
+    private void traverse() {
+        try {
+            Visitor visitor = new Visitor();
+            for (Job root = roots.take(); root != END; root = roots.take()) {
+                try {
+                    visitor.root = root;
+                    Files.walkFileTree(Paths.get((String) root.file), visitor);
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted() || e instanceof InterruptedIOException) {
+                        return;
+                    }
+                    root.fail(failedDigest);
+                    writeQueue.put(root);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Walk was closed
+            return;
+        } catch (Throwable e) {
+            fail(e);
+        }
+        try {
+            writeQueue.put(END);
+            for (int i = 0; i < hashThreads; i++) {
+                hashQueue.put(END);
+            }
+        } catch (InterruptedException e) {
+            // Walk was closed
+        }
+    }
+
+    private void hash() {
+        FileHasher hasher = null;
+        try {
+            for (Job job = hashQueue.take(); job != END; job = hashQueue.take()) {
+                try {
+                    if (hasher == null) {
+                        hasher = hashers.get();
+                    }
+                    job.complete(hasher.hash((Path) job.file, job.attrs).clone());
+                } catch (RuntimeException e) {
+                    job.fail(failedDigest);
+                } catch (Throwable e) {
+                    // Keeps the thread serving the queue, so the writer never waits for a lost job
+                    fail(e);
+                    job.complete(failedDigest);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Walk was closed
+        }
+    }
+
+    private class Visitor extends SimpleFileVisitor<Path> {
+        private Job root;
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            directories.accept(dir);
+            return CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Job job = new Job(file, attrs, root);
+            try {
+                writeQueue.put(job);
+                hashQueue.put(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Walk interrupted");
+            }
+            return CONTINUE;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
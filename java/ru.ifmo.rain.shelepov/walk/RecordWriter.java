@@ -0,0 +1,123 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes walk records into a large reused buffer that is flushed to the channel when full.
+ * <p>
+ * Text records are {@code <hex digest> <path>\n}. Binary ones start with a header of magic number
+ * and digest length, followed by records of raw digest, path length and UTF-8 path bytes.
+ */
+public class RecordWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BINARY_MAGIC = 0x57414c4b;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    public enum Format {
+        TEXT, BINARY
+    }
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] chars = new char[256];
+
+    public RecordWriter(WritableByteChannel channel, Format format, int digestLength) {
+        this.channel = channel;
+        this.format = format;
+        if (format == Format.BINARY) {
+            buffer.putInt(BINARY_MAGIC).putInt(digestLength);
+        }
+    }
+
+    /**
+     * Writes record for the file, {@code file} is a {@link java.nio.file.Path} or a raw input line.
+     */
+    public void write(byte[] digest, Object file) throws IOException {
+        String path = file.toString();
+        int maxLength = 2 * digest.length + Integer.BYTES + 3 * path.length() + 1;
+        if (maxLength > buffer.remaining()) {
+            flush();
+            if (maxLength > buffer.capacity()) {
+                writeLarge(digest, path);
+                return;
+            }
+        }
+
+        int lengthPosition = 0;
+        if (format == Format.TEXT) {
+            for (byte b : digest) {
+                buffer.put(HEX[(b >> 4) & 15]).put(HEX[b & 15]);
+            }
+            buffer.put((byte) ' ');
+        } else {
+            buffer.put(digest);
+            lengthPosition = buffer.position();
+            buffer.putInt(0);
+        }
+
+        int start = buffer.position();
+        encode(path);
+        if (format == Format.TEXT) {
+            buffer.put((byte) '\n');
+        } else {
+            buffer.putInt(lengthPosition, buffer.position() - start);
+        }
+    }
+
+    private void encode(String path) {
+        if (chars.length < path.length()) {
+            chars = new char[Math.max(path.length(), 2 * chars.length)];
+        }
+        path.getChars(0, path.length(), chars, 0);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(chars, 0, path.length()), buffer, true);
+        encoder.flush(buffer);
+    }
+
+    private void writeLarge(byte[] digest, String path) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 * digest.length + Integer.BYTES + bytes.length + 1);
+        if (format == Format.TEXT) {
+            for (byte b : digest) {
+                record.put(HEX[(b >> 4) & 15]).put(HEX[b & 15]);
+            }
+            record.put((byte) ' ').put(bytes).put((byte) '\n');
+        } else {
+            record.put(digest).putInt(bytes.length).put(bytes);
+        }
+        record.flip();
+        drain(record);
+    }
+
+    private void drain(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        drain(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
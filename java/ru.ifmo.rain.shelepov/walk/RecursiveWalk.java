@@ -6,14 +6,23 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.management.JMException;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 
 
 public class RecursiveWalk {
+    private static final int SLOW_FILES = 10;
 
     static private Path inputPath = null;
     static private Path outputPath = null;
@@ -35,20 +44,55 @@ public class RecursiveWalk {
         }
     }
 
-    private static void process(String input, String output) throws WalkException {
+    private static void process(WalkOptions options) throws WalkException {
+        String input = options.getInput();
+        String output = options.getOutput();
         check(input, output);
+        HashCache cache = openCache(options);
+        int digestLength = options.getHash().create().length();
+        ChunkIndex chunks = options.getDedup() == null ? null : new ChunkIndex();
         try (BufferedReader reader = Files.newBufferedReader(Paths.get(input))) {
-            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(output))) {
+            try (RecordWriter writer = new RecordWriter(FileChannel.open(Paths.get(output), CREATE, WRITE, TRUNCATE_EXISTING),
+                    options.getFormat(), digestLength);
+                 WalkMetrics metrics = openMetrics(options);
+                 TreeHash tree = options.getTreeBlock() == 0 ? null
+                         : new TreeHash(hashThreads(options), options.getTreeBlock(), options.getHash());
+                 WalkWatcher watcher = options.isWatch()
+                         ? new WalkWatcher(new FileHasher(options.getHash().create(), null, null, null, tree), writer)
+                         : null) {
                 try {
-                    String path;
-                    FileVisitor visitor = new FileVisitor(writer);
-                    while ((path = reader.readLine()) != null) {
-                        try {
-                            Files.walkFileTree(Paths.get(path), visitor);
-                        } catch (Exception e) {
-                            writer.write("00000000 " + path);
-                            writer.newLine();
+                    Consumer<Path> directories = watcher != null ? watcher::register : dir -> {};
+                    Supplier<FileHasher> hashers = () -> new FileHasher(options.getHash().create(), cache, chunks, metrics, tree);
+                    if (options.isPipeline()) {
+                        try (PipelineWalk walk = new PipelineWalk(hashThreads(options), options.getRootQueue(), options.getHashQueue(),
+                                options.getWriteQueue(), hashers, digestLength, directories, metrics)) {
+                            walk.walk(reader, writer);
+                        }
+                    } else if (options.getThreads() > 0) {
+                        try (ParallelWalk walk = new ParallelWalk(options.getThreads(), hashers, digestLength, directories, metrics)) {
+                            walk.walk(reader, writer);
                         }
+                    } else {
+                        String path;
+                        byte[] failed = new byte[digestLength];
+                        FileHasher hasher = hashers.get();
+                        FileVisitor visitor = new FileVisitor(writer, hasher, directories, metrics);
+                        while ((path = reader.readLine()) != null) {
+                            try {
+                                Files.walkFileTree(Paths.get(path), visitor);
+                            } catch (Exception e) {
+                                if (metrics != null) {
+                                    metrics.error();
+                                }
+                                writer.write(failed, path);
+                            }
+                        }
+                    }
+                    saveCache(cache);
+                    report(chunks, options.getDedup());
+                    if (watcher != null) {
+                        writer.flush();
+                        watcher.run();
                     }
                 } catch (IOException e) {
                     throw new WalkException(e.getMessage());
@@ -61,17 +105,75 @@ public class RecursiveWalk {
         }
     }
 
+    private static void saveCache(HashCache cache) throws WalkException {
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                throw new WalkException("Couldn't save hash cache: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void report(ChunkIndex chunks, String file) throws WalkException {
+        if (chunks != null) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(file))) {
+                chunks.report(writer);
+            } catch (IOException | InvalidPathException e) {
+                throw new WalkException("Couldn't write dedup report: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int hashThreads(WalkOptions options) {
+        return options.getThreads() > 0 ? options.getThreads() : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static WalkMetrics openMetrics(WalkOptions options) throws WalkException {
+        if (options.getProgress() == 0 && !options.isJmx()) {
+            return null;
+        }
+        WalkMetrics metrics = new WalkMetrics(SLOW_FILES);
+        if (options.isJmx()) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                throw new WalkException("Couldn't register walk metrics: " + e.getMessage());
+            }
+        }
+        if (options.getProgress() > 0) {
+            metrics.startReporter(options.getProgress());
+        }
+        return metrics;
+    }
+
+    private static HashCache openCache(WalkOptions options) throws WalkException {
+        if (options.getCache() == null) {
+            return null;
+        }
+        HashFunction.Factory hash = options.getHash();
+        try {
+            String name = options.getTreeBlock() == 0 ? hash.name() : hash.name() + "/tree" + options.getTreeBlock();
+            return HashCache.open(Paths.get(options.getCache()), name, hash.create().length());
+        } catch (IOException | InvalidPathException e) {
+            throw new WalkException("Couldn't open hash cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same as {@link #main}, but failures of the walk are thrown instead of printed.
+     */
+    static void run(String... args) throws WalkException {
+        process(WalkOptions.parse(args));
+    }
+
     public static void main(String[] args) {
         if (args == null) {
             System.err.println("Args is null!");
             return;
         }
-        if (args.length != 2) {
-            System.err.println("Two arguments expected: <input file> <output file>");
-            return;
-        }
         try {
-            process(args[0], args[1]);
+            run(args);
         } catch (WalkException e) {
             System.err.println(e.getMessage());
         }
@@ -0,0 +1,146 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merkle hash over fixed-size blocks of a file. Leaves are {@code H(0 || block)}, inner nodes are
+ * {@code H(1 || left || right)} and the last node of an odd level is carried up unchanged.
+ * Blocks are read with positional reads and hashed on a shared pool, so one large file is
+ * spread over all threads. The digest depends only on the contents and the block size.
+ */
+public class TreeHash implements AutoCloseable {
+    private static final ByteBuffer LEAF = ByteBuffer.wrap(new byte[]{0}).asReadOnlyBuffer();
+    private static final ByteBuffer NODE = ByteBuffer.wrap(new byte[]{1}).asReadOnlyBuffer();
+    // Blocks hashed by one task without splitting it further
+    private static final int BLOCKS_PER_TASK = 4;
+    // Larger blocks are read and hashed piece by piece
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int length;
+    private final ThreadLocal<Worker> workers;
+
+    private class Worker {
+        private final HashFunction function;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.min(blockSize, BUFFER_SIZE));
+        private final byte[] digest;
+
+        Worker(HashFunction function) {
+            this.function = function;
+            this.digest = new byte[function.length()];
+        }
+
+        void leaf(FileChannel channel, long size, long block, byte[] leaves) throws IOException {
+            long position = block * blockSize;
+            long end = Math.min(position + blockSize, size);
+            function.reset();
+            function.update(LEAF);
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    // File was truncated, the rest of the block is missing
+                    break;
+                }
+                buffer.flip();
+                function.update(buffer);
+                position += read;
+            }
+            function.digest(digest);
+            System.arraycopy(digest, 0, leaves, (int) block * length, length);
+        }
+    }
+
+    private class Leaves extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final long from;
+        private final long to;
+        private final byte[] leaves;
+
+        Leaves(FileChannel channel, long size, long from, long to, byte[] leaves) {
+            this.channel = channel;
+            this.size = size;
+            this.from = from;
+            this.to = to;
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BLOCKS_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Leaves(channel, size, from, middle, leaves), new Leaves(channel, size, middle, to, leaves));
+                return;
+            }
+            Worker worker = workers.get();
+            try {
+                for (long block = from; block < to; block++) {
+                    worker.leaf(channel, size, block, leaves);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public TreeHash(int threads, int blockSize, HashFunction.Factory hash) {
+        this.pool = new ForkJoinPool(threads);
+        this.blockSize = blockSize;
+        this.length = hash.create().length();
+        this.workers = ThreadLocal.withInitial(() -> new Worker(hash.create()));
+    }
+
+    /**
+     * Writes the tree digest of the first {@code size} bytes of the channel to {@code out}.
+     */
+    public void hash(FileChannel channel, long size, byte[] out) throws IOException {
+        long blocks = Math.max(1, (size + blockSize - 1) / blockSize);
+        if (blocks > Integer.MAX_VALUE / length) {
+            throw new IOException("Too many blocks of " + blockSize + " bytes in a file of " + size + " bytes");
+        }
+        byte[] leaves = new byte[(int) blocks * length];
+        Worker worker = workers.get();
+        if (blocks == 1) {
+            worker.leaf(channel, size, 0, leaves);
+        } else {
+            try {
+                pool.invoke(new Leaves(channel, size, 0, blocks, leaves));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        combine(worker.function, leaves, (int) blocks, out);
+    }
+
+    private void combine(HashFunction function, byte[] nodes, int count, byte[] out) {
+        ByteBuffer buffer = ByteBuffer.wrap(nodes);
+        while (count > 1) {
+            for (int i = 0; i + 1 < count; i += 2) {
+                function.reset();
+                function.update(NODE);
+                function.update(buffer.limit((i + 2) * length).position(i * length));
+                function.digest(out);
+                System.arraycopy(out, 0, nodes, i / 2 * length, length);
+            }
+            if (count % 2 == 1) {
+                System.arraycopy(nodes, (count - 1) * length, nodes, count / 2 * length, length);
+            }
+            count = (count + 1) / 2;
+        }
+        System.arraycopy(nodes, 0, out, 0, length);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
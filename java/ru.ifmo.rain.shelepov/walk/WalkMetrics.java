@@ -0,0 +1,219 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Walk counters updated by all walker threads. Hot paths only touch {@link LongAdder}s, the
+ * slow file list is locked only for files slower than the fastest one already in it.
+ */
+public class WalkMetrics implements WalkMetricsMBean, AutoCloseable {
+    private static final String NAME = "ru.ifmo.rain.shelepov.walk:type=WalkMetrics";
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cachedFiles = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder directoryNanos = new LongAdder();
+    private final LongAccumulator maxDirectoryNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder errors = new LongAdder();
+
+    private final int slowLimit;
+    private final PriorityQueue<SlowFile> slowFiles = new PriorityQueue<>(Comparator.comparingLong(file -> file.nanos));
+    private volatile long slowThreshold = 0;
+
+    private ObjectName registered;
+    private ScheduledExecutorService reporter;
+
+    private static class SlowFile {
+        private final Path file;
+        private final long bytes;
+        private final long nanos;
+
+        SlowFile(Path file, long bytes, long nanos) {
+            this.file = file;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * @param slowLimit number of slowest files to keep
+     */
+    public WalkMetrics(int slowLimit) {
+        this.slowLimit = slowLimit;
+    }
+
+    void file(Path file, long size, long nanos) {
+        files.increment();
+        bytes.add(size);
+        if (nanos > slowThreshold && slowLimit > 0) {
+            addSlow(new SlowFile(file, size, nanos));
+        }
+    }
+
+    void cachedFile() {
+        files.increment();
+        cachedFiles.increment();
+    }
+
+    void directory(long nanos) {
+        directories.increment();
+        directoryNanos.add(nanos);
+        maxDirectoryNanos.accumulate(nanos);
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    private synchronized void addSlow(SlowFile file) {
+        slowFiles.add(file);
+        if (slowFiles.size() > slowLimit) {
+            slowFiles.poll();
+            slowThreshold = slowFiles.peek().nanos;
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     */
+    public synchronized void register() throws JMException {
+        ObjectName name = new ObjectName(NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        registered = name;
+    }
+
+    /**
+     * Prints a progress line with rates over the last period to stderr every {@code seconds}.
+     */
+    public synchronized void startReporter(long seconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] last = {start, 0, 0};
+        reporter.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            long currentFiles = files.sum();
+            long currentBytes = bytes.sum();
+            double elapsed = (now - last[0]) / NANOS_PER_SECOND;
+            System.err.println(progress(currentFiles, currentBytes,
+                    (currentFiles - last[1]) / elapsed, (currentBytes - last[2]) / elapsed));
+            last[0] = now;
+            last[1] = currentFiles;
+            last[2] = currentBytes;
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    private String progress(long files, long bytes, double filesPerSecond, double bytesPerSecond) {
+        return String.format("files %d (%.1f/s), bytes %d (%.1f MB/s), directories %d (avg %.3f ms, max %.3f ms), errors %d",
+                files, filesPerSecond, bytes, bytesPerSecond / (1 << 20), getDirectories(),
+                getAverageDirectoryMillis(), getMaxDirectoryMillis(), getErrors());
+    }
+
+    /**
+     * Stops the reporter printing the totals and slowest files, unregisters the MBean.
+     */
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(progress(getFiles(), getBytes(), getFilesPerSecond(), getBytesPerSecond()));
+            for (String file : getSlowFiles()) {
+                System.err.println("    " + file);
+            }
+            reporter = null;
+        }
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException ignored) {
+                // Already unregistered by someone else
+            }
+            registered = null;
+        }
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - start, 1) / NANOS_PER_SECOND;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cachedFiles.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / elapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / elapsedSeconds();
+    }
+
+    @Override
+    public double getAverageDirectoryMillis() {
+        long count = directories.sum();
+        return count == 0 ? 0 : directoryNanos.sum() / NANOS_PER_MILLI / count;
+    }
+
+    @Override
+    public double getMaxDirectoryMillis() {
+        return maxDirectoryNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public synchronized String[] getSlowFiles() {
+        List<SlowFile> sorted = new ArrayList<>(slowFiles);
+        sorted.sort(Comparator.comparingLong((SlowFile file) -> file.nanos).reversed());
+        String[] result = new String[sorted.size()];
+        for (int i = 0; i < result.length; i++) {
+            SlowFile file = sorted.get(i);
+            result[i] = String.format("%.3f ms %d bytes %s", file.nanos / NANOS_PER_MILLI, file.bytes, file.file);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.ifmo.rain.shelepov.walk;
+
+/**
+ * Management interface of {@link WalkMetrics}, rates are averaged since the start of the walk.
+ */
+public interface WalkMetricsMBean {
+    long getFiles();
+
+    long getCachedFiles();
+
+    long getBytes();
+
+    long getDirectories();
+
+    /**
+     * Number of records written with the zero digest.
+     */
+    long getErrors();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    double getAverageDirectoryMillis();
+
+    double getMaxDirectoryMillis();
+
+    /**
+     * Slowest hashed files, slowest first, as {@code <millis> ms <bytes> bytes <path>}.
+     */
+    String[] getSlowFiles();
+}
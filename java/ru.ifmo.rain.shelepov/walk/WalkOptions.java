@@ -0,0 +1,229 @@
+package ru.ifmo.rain.shelepov.walk;
+
+public class WalkOptions {
+    static final String USAGE = "Usage: RecursiveWalk [--threads <n>] [--hash <fnv|xxh64|crc32c|sha256>] [--cache <file>]"
+            + " [--format <text|binary>] [--tree <block size>] [--dedup <report file>] [--progress <seconds>] [--jmx] [--watch]"
+            + " [--pipeline [--root-queue <n>] [--hash-queue <n>] [--write-queue <n>]] <input file> <output file>";
+
+    private String input;
+    private String output;
+    private int threads = 0;
+    private HashFunction.Factory hash;
+    private String cache;
+    private RecordWriter.Format format = RecordWriter.Format.TEXT;
+    private int treeBlock = 0;
+    private String dedup;
+    private boolean watch;
+    private int progress = 0;
+    private boolean jmx;
+    private boolean pipeline;
+    private int rootQueue = 1024;
+    private int hashQueue = 1024;
+    private int writeQueue = 8192;
+
+    private WalkOptions() {
+    }
+
+    public static WalkOptions parse(final String[] args) throws WalkException {
+        WalkOptions options = new WalkOptions();
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg != null && arg.startsWith("--") && options.setFlag(arg)) {
+                continue;
+            }
+            if (arg != null && arg.startsWith("--")) {
+                if (i + 1 == args.length) {
+                    throw new WalkException("Value expected after " + arg + "\n" + USAGE);
+                }
+                options.setOption(arg, args[++i]);
+            } else if (positional == 0) {
+                options.input = arg;
+                positional++;
+            } else if (positional == 1) {
+                options.output = arg;
+                positional++;
+            } else {
+                throw new WalkException("Two arguments expected: <input file> <output file>\n" + USAGE);
+            }
+        }
+        if (positional != 2) {
+            throw new WalkException("Two arguments expected: <input file> <output file>\n" + USAGE);
+        }
+        if (options.treeBlock > 0 && options.dedup != null) {
+            throw new WalkException("--tree and --dedup can't be used together\n" + USAGE);
+        }
+        if (options.hash == null) {
+            options.hash = HashFunctions.factory(HashFunctions.DEFAULT);
+        }
+        return options;
+    }
+
+    private boolean setFlag(final String name) {
+        switch (name) {
+            case "--watch":
+                watch = true;
+                return true;
+            case "--jmx":
+                jmx = true;
+                return true;
+            case "--pipeline":
+                pipeline = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void setOption(final String name, final String value) throws WalkException {
+        switch (name) {
+            case "--threads":
+                threads = parseInt(name, value);
+                break;
+            case "--hash":
+                hash = HashFunctions.factory(value);
+                break;
+            case "--cache":
+                cache = value;
+                break;
+            case "--format":
+                format = parseFormat(value);
+                break;
+            case "--tree":
+                treeBlock = parsePositive(name, value);
+                break;
+            case "--dedup":
+                dedup = value;
+                break;
+            case "--progress":
+                progress = parseInt(name, value);
+                break;
+            case "--root-queue":
+                rootQueue = parsePositive(name, value);
+                break;
+            case "--hash-queue":
+                hashQueue = parsePositive(name, value);
+                break;
+            case "--write-queue":
+                writeQueue = parsePositive(name, value);
+                break;
+            default:
+                throw new WalkException("Unknown option " + name + "\n" + USAGE);
+        }
+    }
+
+    private static RecordWriter.Format parseFormat(final String value) throws WalkException {
+        switch (value) {
+            case "text":
+                return RecordWriter.Format.TEXT;
+            case "binary":
+                return RecordWriter.Format.BINARY;
+            default:
+                throw new WalkException("Unknown output format " + value + "\n" + USAGE);
+        }
+    }
+
+    private static int parseInt(final String name, final String value) throws WalkException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 0) {
+                throw new WalkException("Non-negative value expected for " + name);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new WalkException("Integer value expected for " + name + ": " + value);
+        }
+    }
+
+    private static int parsePositive(final String name, final String value) throws WalkException {
+        int result = parseInt(name, value);
+        if (result == 0) {
+            throw new WalkException("Positive value expected for " + name);
+        }
+        return result;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Number of walker threads, {@code 0} means the sequential walk.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public HashFunction.Factory getHash() {
+        return hash;
+    }
+
+    /**
+     * File of the incremental hash cache or {@code null} if every file is hashed.
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    public RecordWriter.Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Block size of the tree hash, {@code 0} means files are hashed as a whole.
+     */
+    public int getTreeBlock() {
+        return treeBlock;
+    }
+
+    /**
+     * File of the duplicate and dedup ratio report or {@code null} if files are not chunked.
+     */
+    public String getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Whether to keep watching walked directories after the walk.
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Period of the stderr progress report in seconds, {@code 0} means no report.
+     */
+    public int getProgress() {
+        return progress;
+    }
+
+    /**
+     * Whether to expose walk metrics as an MBean.
+     */
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Whether to walk with the staged {@link PipelineWalk}, {@link #getThreads()} threads hash files.
+     */
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    public int getRootQueue() {
+        return rootQueue;
+    }
+
+    public int getHashQueue() {
+        return hashQueue;
+    }
+
+    public int getWriteQueue() {
+        return writeQueue;
+    }
+}
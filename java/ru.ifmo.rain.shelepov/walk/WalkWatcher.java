@@ -0,0 +1,106 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Keeps watching directories visited by the walk and writes a new record for every created
+ * or modified file. Events that arrive together are coalesced, so a file written in several
+ * chunks is hashed once per batch.
+ */
+public class WalkWatcher implements Closeable {
+    private final WatchService service;
+    private final FileHasher hasher;
+    private final RecordWriter writer;
+
+    public WalkWatcher(FileHasher hasher, RecordWriter writer) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.hasher = hasher;
+        this.writer = writer;
+    }
+
+    public void register(Path dir) {
+        try {
+            dir.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Couldn't watch directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Processes events until the thread is interrupted or the watcher is closed.
+     */
+    public void run() throws IOException {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Map<Path, Boolean> changed = new LinkedHashMap<>();
+                for (WatchKey key = service.take(); key != null; key = service.poll()) {
+                    collect(key, changed);
+                }
+                for (Map.Entry<Path, Boolean> entry : changed.entrySet()) {
+                    update(entry.getKey(), entry.getValue());
+                }
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // Watching is over
+        }
+    }
+
+    // Values tell whether a directory at the path has to be walked again
+    private void collect(WatchKey key, Map<Path, Boolean> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changed.put(dir, true);
+            } else {
+                changed.merge(dir.resolve((Path) event.context()), event.kind() == ENTRY_CREATE, Boolean::logicalOr);
+            }
+        }
+        key.reset();
+    }
+
+    private void update(Path file, boolean rescan) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            // Removed before we got to it
+            return;
+        }
+        if (!attrs.isDirectory()) {
+            writer.write(hasher.hash(file, attrs), file);
+            return;
+        }
+        if (!rescan) {
+            return;
+        }
+        try {
+            Files.walkFileTree(file, new FileVisitor(writer, hasher, this::register));
+        } catch (IOException e) {
+            System.err.println("Couldn't walk directory " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.rain.shelepov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming xxHash64 with zero seed.
+ */
+public class XxHash64 implements HashFunction {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    public XxHash64() {
+        reset();
+    }
+
+    @Override
+    public int length() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public void reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        tail.clear();
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long merge(long acc, long v) {
+        return (acc ^ round(0, v)) * P1 + P4;
+    }
+
+    private void stripe(ByteBuffer data, int offset) {
+        v1 = round(v1, data.getLong(offset));
+        v2 = round(v2, data.getLong(offset + 8));
+        v3 = round(v3, data.getLong(offset + 16));
+        v4 = round(v4, data.getLong(offset + 24));
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        ByteBuffer bytes = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        total += bytes.remaining();
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && bytes.hasRemaining()) {
+                tail.put(bytes.get());
+            }
+            if (tail.hasRemaining()) {
+                return;
+            }
+            stripe(tail, 0);
+            tail.clear();
+        }
+        int i = bytes.position();
+        int limit = bytes.limit();
+        for (; i + STRIPE <= limit; i += STRIPE) {
+            stripe(bytes, i);
+        }
+        for (; i < limit; i++) {
+            tail.put(bytes.get(i));
+        }
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(merge(merge(merge(h, v1), v2), v3), v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+
+        int i = 0;
+        int end = tail.position();
+        for (; i + 8 <= end; i += 8) {
+            h = Long.rotateLeft(h ^ round(0, tail.getLong(i)), 27) * P1 + P4;
+        }
+        if (i + 4 <= end) {
+            h = Long.rotateLeft(h ^ (tail.getInt(i) & 0xFFFFFFFFL) * P1, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < end; i++) {
+            h = Long.rotateLeft(h ^ (tail.get(i) & 255) * P5, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        HashFunctions.putLong(out, h);
+    }
+}
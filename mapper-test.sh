@@ -1,4 +1,6 @@
 #!/bin/sh
 
-javac -d out/mapper_build -cp artifacts/info.kgeorgiy.java.advanced.mapper.jar:artifacts/info.kgeorgiy.java.advanced.concurrent.jar java/ru.ifmo.rain.shelepov/concurrent/ParallelMapperImpl.java java/ru.ifmo.rain.shelepov/concurrent/IterativeParallelism.java
+javac -d out/mapper_build -cp artifacts/info.kgeorgiy.java.advanced.mapper.jar:artifacts/info.kgeorgiy.java.advanced.concurrent.jar java/ru.ifmo.rain.shelepov/concurrent/ParallelMapperImpl.java java/ru.ifmo.rain.shelepov/concurrent/IterativeParallelism.java java/ru.ifmo.rain.shelepov/concurrent/WorkStealingParallelMapper.java java/ru.ifmo.rain.shelepov/concurrent/BoundedParallelMapper.java java/ru.ifmo.rain.shelepov/concurrent/StreamingParallelMapper.java java/ru.ifmo.rain.shelepov/concurrent/MapperErrors.java
 java -cp out/mapper_build -p artifacts:lib -m info.kgeorgiy.java.advanced.mapper list ru.ifmo.rain.shelepov.concurrent.ParallelMapperImpl,ru.ifmo.rain.shelepov.concurrent.IterativeParallelism 123
+java -cp out/mapper_build -p artifacts:lib -m info.kgeorgiy.java.advanced.mapper list ru.ifmo.rain.shelepov.concurrent.WorkStealingParallelMapper,ru.ifmo.rain.shelepov.concurrent.IterativeParallelism 123
+java -cp out/mapper_build -p artifacts:lib -m info.kgeorgiy.java.advanced.mapper list ru.ifmo.rain.shelepov.concurrent.BoundedParallelMapper,ru.ifmo.rain.shelepov.concurrent.IterativeParallelism 123
@@ -0,0 +1,5 @@
+#!/bin/sh
+
+# Requires jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars in lib/
+javac -d out/walk_benchmark -cp "lib/*" java/ru.ifmo.rain.shelepov/walk/*.java benchmarks/ru.ifmo.rain.shelepov/walk/*.java
+java -cp "out/walk_benchmark:lib/*" org.openjdk.jmh.Main ru.ifmo.rain.shelepov.walk "$@"
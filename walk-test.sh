@@ -1,2 +1,2 @@
-javac -d out/walk_build java/ru.ifmo.rain.shelepov/walk/WalkException.java java/ru.ifmo.rain.shelepov/walk/FileVisitor.java java/ru.ifmo.rain.shelepov/walk/RecursiveWalk.java
+javac -d out/walk_build java/ru.ifmo.rain.shelepov/walk/*.java
 java -cp out/walk_build -p artifacts:lib -m info.kgeorgiy.java.advanced.walk RecursiveWalk ru.ifmo.rain.shelepov.walk.RecursiveWalk
\ No newline at end of file